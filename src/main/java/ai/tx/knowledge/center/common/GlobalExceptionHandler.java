@@ -28,6 +28,16 @@ public class GlobalExceptionHandler {
             "缺少必要参数: " + e.getParameterName());
     }
 
+    /**
+     * 入库任务过多
+     */
+    @ExceptionHandler(IngestRejectedException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public Result<Void> handleIngestRejected(IngestRejectedException e) {
+        log.warn("入库请求被拒绝: {}", e.getMessage());
+        return Result.error(ResultCode.TOO_MANY_REQUESTS.getCode(), e.getMessage());
+    }
+
     /**
      * 处理通用异常
      */
@@ -0,0 +1,214 @@
+package ai.tx.knowledge.center.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 哈希工具类
+ * 摘要算法实例按线程复用，十六进制编码使用查表法；
+ * 另提供非加密的 MurmurHash3 128位哈希，用于只需去重、不需防篡改的场景
+ *
+ * @author tanxiong
+ */
+public class HashUtils {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> newDigest("SHA-256"));
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> newDigest("MD5"));
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * 私有构造函数，防止实例化
+     */
+    private HashUtils() {
+        throw new UnsupportedOperationException("HashUtils is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * SHA-256 摘要（UTF-8编码）
+     */
+    public static byte[] sha256(String input) {
+        return digest(SHA_256.get(), input);
+    }
+
+    /**
+     * SHA-256 摘要的十六进制字符串（64位小写）
+     */
+    public static String sha256Hex(String input) {
+        return toHex(sha256(input));
+    }
+
+    /**
+     * 文件内容的 SHA-256 摘要的十六进制字符串，按块读取，不整体载入内存
+     */
+    public static String sha256Hex(Path file) throws IOException {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * MD5 摘要的十六进制字符串（32位小写）
+     */
+    public static String md5Hex(String input) {
+        return toHex(digest(MD5.get(), input));
+    }
+
+    /**
+     * MurmurHash3 x64 128位哈希的十六进制字符串（32位小写），非加密哈希，速度远高于摘要算法
+     */
+    public static String murmur3Hex(String input) {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        long[] hash = murmur3(bytes, 0, bytes.length, 0);
+        char[] out = new char[32];
+        writeLittleEndianHex(hash[0], out, 0);
+        writeLittleEndianHex(hash[1], out, 16);
+        return new String(out);
+    }
+
+    /**
+     * 十六进制编码
+     */
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            out[i * 2] = HEX_DIGITS[v >>> 4];
+            out[i * 2 + 1] = HEX_DIGITS[v & 0x0f];
+        }
+        return new String(out);
+    }
+
+    /**
+     * MurmurHash3 x64 128位
+     *
+     * @return {h1, h2}
+     */
+    public static long[] murmur3(byte[] data, int offset, int length, long seed) {
+        long h1 = seed;
+        long h2 = seed;
+        int blocks = length / 16;
+
+        for (int i = 0; i < blocks; i++) {
+            int index = offset + i * 16;
+            long k1 = getLongLittleEndian(data, index);
+            long k2 = getLongLittleEndian(data, index + 8);
+
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int tail = offset + blocks * 16;
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15: k2 ^= (long) (data[tail + 14] & 0xff) << 48;
+            case 14: k2 ^= (long) (data[tail + 13] & 0xff) << 40;
+            case 13: k2 ^= (long) (data[tail + 12] & 0xff) << 32;
+            case 12: k2 ^= (long) (data[tail + 11] & 0xff) << 24;
+            case 11: k2 ^= (long) (data[tail + 10] & 0xff) << 16;
+            case 10: k2 ^= (long) (data[tail + 9] & 0xff) << 8;
+            case 9:
+                k2 ^= data[tail + 8] & 0xff;
+                k2 *= C2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= C1;
+                h2 ^= k2;
+            case 8: k1 ^= (long) (data[tail + 7] & 0xff) << 56;
+            case 7: k1 ^= (long) (data[tail + 6] & 0xff) << 48;
+            case 6: k1 ^= (long) (data[tail + 5] & 0xff) << 40;
+            case 5: k1 ^= (long) (data[tail + 4] & 0xff) << 32;
+            case 4: k1 ^= (long) (data[tail + 3] & 0xff) << 24;
+            case 3: k1 ^= (long) (data[tail + 2] & 0xff) << 16;
+            case 2: k1 ^= (long) (data[tail + 1] & 0xff) << 8;
+            case 1:
+                k1 ^= data[tail] & 0xff;
+                k1 *= C1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= C2;
+                h1 ^= k1;
+            default:
+                break;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLongLittleEndian(byte[] data, int index) {
+        return (data[index] & 0xffL)
+                | (data[index + 1] & 0xffL) << 8
+                | (data[index + 2] & 0xffL) << 16
+                | (data[index + 3] & 0xffL) << 24
+                | (data[index + 4] & 0xffL) << 32
+                | (data[index + 5] & 0xffL) << 40
+                | (data[index + 6] & 0xffL) << 48
+                | (data[index + 7] & 0xffL) << 56;
+    }
+
+    private static void writeLittleEndianHex(long value, char[] out, int position) {
+        for (int i = 0; i < 8; i++) {
+            int v = (int) (value >>> (i * 8)) & 0xff;
+            out[position + i * 2] = HEX_DIGITS[v >>> 4];
+            out[position + i * 2 + 1] = HEX_DIGITS[v & 0x0f];
+        }
+    }
+
+    private static byte[] digest(MessageDigest digest, String input) {
+        digest.reset();
+        return digest.digest(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("摘要算法不可用: " + algorithm, e);
+        }
+    }
+}
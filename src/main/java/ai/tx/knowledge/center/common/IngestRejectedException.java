@@ -0,0 +1,11 @@
+package ai.tx.knowledge.center.common;
+
+/**
+ * 入库任务过多（队列已满或内存预算不足），请求应稍后重试
+ */
+public class IngestRejectedException extends Exception {
+
+    public IngestRejectedException(String message) {
+        super(message);
+    }
+}
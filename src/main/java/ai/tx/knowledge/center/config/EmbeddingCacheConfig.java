@@ -0,0 +1,58 @@
+package ai.tx.knowledge.center.config;
+
+import ai.tx.knowledge.center.service.embedding.CachingEmbeddingModel;
+import ai.tx.knowledge.center.service.embedding.MappedEmbeddingStore;
+import ai.tx.knowledge.center.service.embedding.QueryEmbeddingCache;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 向量缓存配置
+ * 将容器中的向量模型（DashScope）包装为 {@link CachingEmbeddingModel}，
+ * Milvus向量库注入的即为带缓存的模型。片段向量缓存和查询向量缓存都关闭时不做包装。
+ *
+ * @author tanxiong
+ */
+@Configuration
+public class EmbeddingCacheConfig {
+
+    @Bean
+    public static BeanPostProcessor embeddingCachePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (!(bean instanceof EmbeddingModel embeddingModel) || bean instanceof CachingEmbeddingModel) {
+                    return bean;
+                }
+                boolean storeEnabled = environment.getProperty("rag.embedding-cache.enabled", Boolean.class, true);
+                boolean queryEnabled = environment.getProperty("rag.query-embedding-cache.enabled", Boolean.class, true);
+                if (!storeEnabled && !queryEnabled) {
+                    return bean;
+                }
+                String modelName = environment.getProperty("spring.ai.dashscope.embedding.options.model", "");
+                QueryEmbeddingCache queryCache = queryEnabled ? new QueryEmbeddingCache(modelName,
+                        environment.getProperty("rag.query-embedding-cache.max-entries", Integer.class, 2000)) : null;
+                if (!storeEnabled) {
+                    return new CachingEmbeddingModel(embeddingModel, null, queryCache);
+                }
+                Path path = Path.of(environment.getProperty("rag.embedding-cache.path", "./data/embedding-cache.bin"));
+                int maxEntries = environment.getProperty("rag.embedding-cache.max-entries", Integer.class, 20000);
+                int dimension = environment.getProperty("spring.ai.vectorstore.milvus.embeddingDimension", Integer.class, 1536);
+                try {
+                    MappedEmbeddingStore store = new MappedEmbeddingStore(path, dimension, maxEntries, modelName);
+                    return new CachingEmbeddingModel(embeddingModel, store, queryCache);
+                } catch (IOException e) {
+                    throw new BeanCreationException(beanName, "向量缓存文件初始化失败: " + path, e);
+                }
+            }
+        };
+    }
+}
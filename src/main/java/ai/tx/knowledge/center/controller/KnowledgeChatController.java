@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 知识聊天控制器
@@ -137,4 +138,12 @@ public class KnowledgeChatController {
         return Result.success();
     }
 
+    /**
+     * 问答语义缓存统计：命中率、缓存条目数
+     */
+    @GetMapping("/answerCache/stats")
+    public Result<Map<String, Object>> answerCacheStats() {
+        return Result.success(knowledgeChatService.getAnswerCacheStats());
+    }
+
 }
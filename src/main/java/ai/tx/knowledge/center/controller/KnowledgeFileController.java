@@ -1,10 +1,16 @@
 package ai.tx.knowledge.center.controller;
 
+import ai.tx.knowledge.center.common.IngestRejectedException;
 import ai.tx.knowledge.center.common.Result;
+import ai.tx.knowledge.center.enums.DocumentStatus;
 import ai.tx.knowledge.center.enums.ResultCode;
 import ai.tx.knowledge.center.dto.DocumentsDTO;
 import ai.tx.knowledge.center.entity.Documents;
+import ai.tx.knowledge.center.service.CategoryBackfill;
+import ai.tx.knowledge.center.service.DirectorySyncService;
+import ai.tx.knowledge.center.service.DocumentPurger;
 import ai.tx.knowledge.center.service.KnowledgeFileService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,12 +35,20 @@ public class KnowledgeFileController {
     @Autowired
     private KnowledgeFileService knowledgeFileService;
 
+    @Autowired
+    private DirectorySyncService directorySyncService;
+
+    @Autowired
+    private CategoryBackfill categoryBackfill;
+
 
     /**
      * 上传知识文件（支持多种格式）
+     * 文件入队后立即返回文档ID，处理进度通过 /knowledge/status 查询
      */
     @PostMapping("/upload")
-    public Result<Map<String, Object>> uploadKnowledgeFile(@RequestParam("file") MultipartFile file, @RequestParam("category") String category) {
+    public Result<Map<String, Object>> uploadKnowledgeFile(@RequestParam("file") MultipartFile file, @RequestParam("category") String category)
+            throws IngestRejectedException {
         try {
             // 1. 参数验证
             if (file == null || file.isEmpty()) {
@@ -46,17 +60,21 @@ public class KnowledgeFileController {
             document.genId();
             document.setCategory(category);
 
-            // 2. 处理文档
-            knowledgeFileService.processDocument(file, document);
+            // 2. 提交入库任务
+            String documentId = knowledgeFileService.submitDocument(file, document);
 
             // 3. 返回结果
             Map<String, Object> result = new HashMap<>();
+            result.put("documentId", documentId);
+            result.put("status", document.getStatus());
             result.put("fileName", file.getOriginalFilename());
             result.put("fileSize", file.getSize());
             result.put("fileType", getFileExtension(file.getOriginalFilename()));
 
-            return Result.success("知识文件上传成功", result);
+            return Result.success("知识文件已提交处理", result);
 
+        } catch (IngestRejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("上传知识文件失败", e);
             return Result.error(ResultCode.KNOWLEDGE_UPLOAD_ERROR.getCode(),
@@ -64,6 +82,75 @@ public class KnowledgeFileController {
         }
     }
 
+    /**
+     * 用新版本替换已有文档
+     * 只向量化新增的片段、删除不再出现的片段，处理期间旧版本仍可检索，处理进度通过 /knowledge/status 查询
+     */
+    @PostMapping("/replace")
+    public Result<Map<String, Object>> replaceKnowledgeFile(@RequestParam("id") String id,
+                                                            @RequestParam("file") MultipartFile file)
+            throws IngestRejectedException {
+        try {
+            if (file == null || file.isEmpty()) {
+                return Result.error(ResultCode.BAD_REQUEST.getCode(), "请选择要上传的文件");
+            }
+
+            log.info("开始替换知识文件: {}, documentId: {}", file.getOriginalFilename(), id);
+            String documentId = knowledgeFileService.replaceDocument(id, file);
+
+            // 版本号和名称在新版本入库完成后才切换
+            Map<String, Object> result = new HashMap<>();
+            result.put("documentId", documentId);
+            result.put("status", DocumentStatus.PROCESSING);
+            result.put("fileName", file.getOriginalFilename());
+            result.put("fileSize", file.getSize());
+
+            return Result.success("新版本已提交处理", result);
+
+        } catch (IngestRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("替换知识文件失败", e);
+            return Result.error(ResultCode.KNOWLEDGE_UPLOAD_ERROR.getCode(),
+                    "替换知识文件失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 批量上传知识文件
+     * 请求体直接为 zip / tar / tar.gz 压缩包（非multipart），边接收边解包入库，
+     * 返回每个文件的文档ID或失败原因，处理进度通过 /knowledge/status 查询
+     */
+    @PostMapping("/bulkUpload")
+    public Result<List<Map<String, Object>>> bulkUpload(@RequestParam("category") String category,
+                                                        HttpServletRequest request) {
+        try {
+            log.info("开始批量上传知识文件, category: {}", category);
+            List<Map<String, Object>> manifest = knowledgeFileService.submitArchive(request.getInputStream(), category);
+            return Result.success("知识文件已提交处理", manifest);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.error(ResultCode.KNOWLEDGE_UPLOAD_ERROR.getCode(), "批量上传被中断");
+        } catch (Exception e) {
+            log.error("批量上传知识文件失败", e);
+            return Result.error(ResultCode.KNOWLEDGE_UPLOAD_ERROR.getCode(),
+                    "批量上传知识文件失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询文档处理状态
+     */
+    @GetMapping("/status")
+    public Result<Documents> status(@RequestParam("id") String id) {
+        Documents document = knowledgeFileService.getDocumentStatus(id);
+        if (document == null) {
+            return Result.error(ResultCode.NOT_FOUND.getCode(), "文档不存在");
+        }
+        return Result.success(document);
+    }
+
 
     /**
      * 搜索知识库
@@ -88,6 +175,14 @@ public class KnowledgeFileController {
         }
     }
 
+    /**
+     * 检索结果缓存统计：命中率、节省的检索耗时
+     */
+    @GetMapping("/searchCache/stats")
+    public Result<Map<String, Object>> searchCacheStats() {
+        return Result.success(knowledgeFileService.getSearchCacheStats());
+    }
+
     /**
      * 获取支持的文件类型
      */
@@ -104,12 +199,122 @@ public class KnowledgeFileController {
     }
 
 
+    /**
+     * 入库内存预算使用情况：总预算、已预留、排队数、拒绝数及当前各任务的预留
+     */
+    @GetMapping("/ingest/stats")
+    public Result<Map<String, Object>> ingestStats() {
+        return Result.success(knowledgeFileService.getIngestMemoryStats());
+    }
+
+
+    /**
+     * 向量缓存统计
+     */
+    @GetMapping("/embeddingCache/stats")
+    public Result<Map<String, Object>> embeddingCacheStats() {
+        return Result.success(knowledgeFileService.getEmbeddingCacheStats());
+    }
+
+
+    /**
+     * 续传处理失败的文档，从第一个未写入的批次继续
+     */
+    @PostMapping("/resume")
+    public Result<Void> resume(@RequestBody DocumentsDTO dto) throws IngestRejectedException {
+        try {
+            knowledgeFileService.resumeDocument(dto.getId());
+            return Result.success();
+        } catch (IngestRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("文档续传失败: {}", dto.getId(), e);
+            return Result.error(ResultCode.KNOWLEDGE_UPLOAD_ERROR.getCode(), "文档续传失败: " + e.getMessage());
+        }
+    }
+
+
     @RequestMapping("/del")
     public Result<Void> del(@RequestBody DocumentsDTO dto) {
-        knowledgeFileService.del(dto.getId());
+        try {
+            knowledgeFileService.del(dto.getId());
+            return Result.success();
+        } catch (Exception e) {
+            log.warn("文档删除失败: {}, {}", dto.getId(), e.getMessage());
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "文档删除失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 批量删除文档，返回删除任务，可通过 /knowledge/purge/status 查询进度
+     */
+    @PostMapping("/batchDel")
+    public Result<DocumentPurger.PurgeTask> batchDel(@RequestBody DocumentsDTO dto) {
+        if (dto.getIds() == null || dto.getIds().isEmpty()) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "请选择要删除的文档");
+        }
+        return Result.success("删除任务已提交", knowledgeFileService.deleteDocuments(dto.getIds()));
+    }
+
+    /**
+     * 清空分类下的全部文档
+     */
+    @PostMapping("/purge")
+    public Result<DocumentPurger.PurgeTask> purge(@RequestParam("category") String category) {
+        if (!StringUtils.hasText(category)) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "分类不能为空");
+        }
+        return Result.success("删除任务已提交", knowledgeFileService.purgeCategory(category));
+    }
+
+    /**
+     * 查询批量删除进度
+     */
+    @GetMapping("/purge/status")
+    public Result<DocumentPurger.PurgeTask> purgeStatus(@RequestParam("taskId") String taskId) {
+        DocumentPurger.PurgeTask task = knowledgeFileService.getPurgeTask(taskId);
+        if (task == null) {
+            return Result.error(ResultCode.NOT_FOUND.getCode(), "删除任务不存在");
+        }
+        return Result.success(task);
+    }
+
+    /**
+     * 立即全量扫描同步目录，只提交变化的文件
+     */
+    @PostMapping("/sync")
+    public Result<Void> sync() {
+        if (!directorySyncService.triggerScan()) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "目录同步未启用");
+        }
         return Result.success();
     }
 
+    /**
+     * 目录同步状态及最近的扫描结果
+     */
+    @GetMapping("/sync/status")
+    public Result<Map<String, Object>> syncStatus() {
+        return Result.success(directorySyncService.getStatus());
+    }
+
+    /**
+     * 补写历史向量的分类元数据，已完成或正在执行时忽略
+     */
+    @PostMapping("/categoryBackfill")
+    public Result<Map<String, Object>> categoryBackfill() {
+        categoryBackfill.start();
+        return Result.success(categoryBackfill.getStatus());
+    }
+
+    /**
+     * 向量分类补写进度
+     */
+    @GetMapping("/categoryBackfill/status")
+    public Result<Map<String, Object>> categoryBackfillStatus() {
+        return Result.success(categoryBackfill.getStatus());
+    }
+
 
     /**
      * 获取文件扩展名
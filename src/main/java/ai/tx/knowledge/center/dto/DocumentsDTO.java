@@ -7,9 +7,16 @@ package ai.tx.knowledge.center.dto;
 
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class DocumentsDTO {
 
     private String id;
 
+    /**
+     * 批量删除的文档ID
+     */
+    private List<String> ids;
+
 }
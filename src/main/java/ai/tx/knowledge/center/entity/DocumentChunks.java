@@ -0,0 +1,34 @@
+package ai.tx.knowledge.center.entity;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 文档片段台账，记录向量库中每个片段所属文档及内容哈希
+ *
+ * @author tanxiong
+ */
+@Data
+public class DocumentChunks implements Serializable {
+
+    /**
+     * 向量库中的文档ID
+     */
+    private String id;
+
+    private String documentId;
+
+    private String contentHash;
+
+    /**
+     * 片段内容的 SimHash 指纹，内容过短时为空
+     */
+    private Long simhash;
+
+    /**
+     * 近似重复片段所链接的片段ID，此时片段本身不写入向量库，检索时由被链接的片段代表
+     */
+    private String duplicateOf;
+
+}
@@ -1,6 +1,7 @@
 package ai.tx.knowledge.center.entity;
 
 import ai.tx.knowledge.center.common.IdUtils;
+import ai.tx.knowledge.center.enums.DocumentStatus;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -18,6 +19,18 @@ public class Documents implements Serializable {
 
     private String category;
 
+    private DocumentStatus status;
+
+    /**
+     * 版本号，每次入库成功后加一，0表示尚未入库成功
+     */
+    private Integer version;
+
+    /**
+     * 处理失败原因
+     */
+    private String failReason;
+
     /**
      * 生成唯一ID
      */
@@ -0,0 +1,52 @@
+package ai.tx.knowledge.center.entity;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 入库断点，记录未完成入库任务的转存文件和已写入的批次进度，
+ * 已写入的片段ID见 {@link DocumentChunks}
+ *
+ * @author tanxiong
+ */
+@Data
+public class IngestCheckpoints implements Serializable {
+
+    private String documentId;
+
+    /**
+     * 执行入库的节点，转存文件只在该节点上存在
+     */
+    private String node;
+
+    /**
+     * 转存文件路径
+     */
+    private String spoolPath;
+
+    private String fileName;
+
+    private String fileType;
+
+    private Long fileSize;
+
+    /**
+     * 已执行次数
+     */
+    private Integer attempts;
+
+    /**
+     * 本次执行已连续写入的片段数
+     */
+    private Integer chunksWritten;
+
+    /**
+     * 本次执行已写入的批次数
+     */
+    private Integer batchesWritten;
+
+    private Date updatedAt;
+
+}
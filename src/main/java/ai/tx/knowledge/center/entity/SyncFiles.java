@@ -0,0 +1,41 @@
+package ai.tx.knowledge.center.entity;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 目录同步清单，记录同步目录中每个文件上次入库时的修改时间、大小和内容哈希
+ *
+ * @author tanxiong
+ */
+@Data
+public class SyncFiles implements Serializable {
+
+    /**
+     * 文件路径的SHA-256
+     */
+    private String id;
+
+    /**
+     * 文件的绝对路径
+     */
+    private String path;
+
+    private String category;
+
+    private String documentId;
+
+    private Long fileSize;
+
+    /**
+     * 文件修改时间（毫秒）
+     */
+    private Long lastModified;
+
+    private String contentHash;
+
+    private Date syncedAt;
+
+}
@@ -0,0 +1,24 @@
+package ai.tx.knowledge.center.enums;
+
+import lombok.Getter;
+
+/**
+ * 文档处理状态枚举，与 documents.status 字段一致
+ */
+@Getter
+public enum DocumentStatus {
+
+    PROCESSING("处理中"),
+    COMPLETED("已完成"),
+    FAILED("处理失败"),
+    DELETING("删除中")
+    ;
+
+
+    private final String message;
+
+    DocumentStatus(String message) {
+        this.message = message;
+    }
+
+}
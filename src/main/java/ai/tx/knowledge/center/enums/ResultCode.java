@@ -16,6 +16,7 @@ public enum ResultCode {
     UNAUTHORIZED(401, "未授权"),
     FORBIDDEN(403, "禁止访问"),
     NOT_FOUND(404, "资源未找到"),
+    TOO_MANY_REQUESTS(429, "请求过多，请稍后重试"),
     
     // 服务器错误
     INTERNAL_SERVER_ERROR(500, "服务器内部错误"),
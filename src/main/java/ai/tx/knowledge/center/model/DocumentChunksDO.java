@@ -0,0 +1,27 @@
+package ai.tx.knowledge.center.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * @author tanxiong
+ */
+@Data
+@Entity
+@Table(name = "document_chunks")
+public class DocumentChunksDO {
+
+    @Id
+    private String id;
+
+    private String documentId;
+
+    private String contentHash;
+
+    private Long simhash;
+
+    private String duplicateOf;
+
+}
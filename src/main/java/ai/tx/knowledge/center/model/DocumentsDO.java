@@ -1,8 +1,7 @@
 package ai.tx.knowledge.center.model;
 
-import jakarta.persistence.Entity;
-import jakarta.persistence.Id;
-import jakarta.persistence.Table;
+import ai.tx.knowledge.center.enums.DocumentStatus;
+import jakarta.persistence.*;
 import lombok.Data;
 
 /**
@@ -21,5 +20,11 @@ public class DocumentsDO {
 
     private String category;
 
+    @Enumerated(EnumType.STRING)
+    private DocumentStatus status;
+
+    private Integer version;
+
+    private String failReason;
 
 }
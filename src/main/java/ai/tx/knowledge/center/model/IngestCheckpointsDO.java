@@ -0,0 +1,39 @@
+package ai.tx.knowledge.center.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * @author tanxiong
+ */
+@Data
+@Entity
+@Table(name = "ingest_checkpoints")
+public class IngestCheckpointsDO {
+
+    @Id
+    private String documentId;
+
+    private String node;
+
+    private String spoolPath;
+
+    private String fileName;
+
+    private String fileType;
+
+    private Long fileSize;
+
+    private Integer attempts;
+
+    private Integer chunksWritten;
+
+    private Integer batchesWritten;
+
+    private Date updatedAt;
+
+}
@@ -0,0 +1,35 @@
+package ai.tx.knowledge.center.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * @author tanxiong
+ */
+@Data
+@Entity
+@Table(name = "sync_files")
+public class SyncFilesDO {
+
+    @Id
+    private String id;
+
+    private String path;
+
+    private String category;
+
+    private String documentId;
+
+    private Long fileSize;
+
+    private Long lastModified;
+
+    private String contentHash;
+
+    private Date syncedAt;
+
+}
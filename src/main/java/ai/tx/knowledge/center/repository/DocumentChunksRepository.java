@@ -0,0 +1,85 @@
+package ai.tx.knowledge.center.repository;
+
+import ai.tx.knowledge.center.entity.DocumentChunks;
+import ai.tx.knowledge.center.model.DocumentChunksDO;
+import ai.tx.knowledge.center.repository.dao.DocumentChunksDAO;
+import cn.hutool.core.bean.BeanUtil;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author tanxiong
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class DocumentChunksRepository {
+
+    DocumentChunksDAO documentChunksDAO;
+
+    public List<DocumentChunks> findByDocumentId(String documentId){
+        List<DocumentChunksDO> documentChunksDOS = documentChunksDAO.findByDocumentId(documentId);
+        return BeanUtil.copyToList(documentChunksDOS, DocumentChunks.class);
+    }
+
+    public List<DocumentChunks> findByDocumentIds(Collection<String> documentIds){
+        return BeanUtil.copyToList(documentChunksDAO.findByDocumentIdIn(documentIds), DocumentChunks.class);
+    }
+
+    public List<DocumentChunks> findByIds(Collection<String> ids){
+        return BeanUtil.copyToList(documentChunksDAO.findAllById(ids), DocumentChunks.class);
+    }
+
+    /**
+     * 链接到指定片段的近似重复片段
+     */
+    public List<DocumentChunks> findByDuplicateOf(Collection<String> ids){
+        return BeanUtil.copyToList(documentChunksDAO.findByDuplicateOfIn(ids), DocumentChunks.class);
+    }
+
+    /**
+     * 分页读取已写入向量库且有指纹的片段，按ID排序
+     */
+    public Slice<DocumentChunks> findFingerprinted(int page, int size){
+        return documentChunksDAO.findBySimhashIsNotNullAndDuplicateOfIsNull(PageRequest.of(page, size, Sort.by("id")))
+                .map(documentChunksDO -> BeanUtil.copyProperties(documentChunksDO, DocumentChunks.class));
+    }
+
+    public void save(DocumentChunks documentChunks){
+        documentChunksDAO.save(BeanUtil.copyProperties(documentChunks, DocumentChunksDO.class));
+    }
+
+    public void saveAll(List<DocumentChunks> documentChunks){
+        documentChunksDAO.saveAll(BeanUtil.copyToList(documentChunks, DocumentChunksDO.class));
+    }
+
+    public void deleteByIds(Collection<String> ids){
+        documentChunksDAO.deleteAllByIdInBatch(ids);
+    }
+
+    /**
+     * 被链接片段转给链接方：在一个事务中保存改为链接方文档的片段，并删除已接收片段的链接
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void transfer(List<DocumentChunks> documentChunks, Collection<String> consumedLinkIds){
+        documentChunksDAO.saveAll(BeanUtil.copyToList(documentChunks, DocumentChunksDO.class));
+        documentChunksDAO.deleteAllByIdInBatch(consumedLinkIds);
+    }
+
+    public void deleteByDocumentId(String documentId){
+        documentChunksDAO.deleteByDocumentId(documentId);
+    }
+
+    public void deleteByDocumentIds(Collection<String> documentIds){
+        documentChunksDAO.deleteByDocumentIds(documentIds);
+    }
+}
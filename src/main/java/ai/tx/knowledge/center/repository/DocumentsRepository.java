@@ -1,6 +1,7 @@
 package ai.tx.knowledge.center.repository;
 
 import ai.tx.knowledge.center.entity.Documents;
+import ai.tx.knowledge.center.enums.DocumentStatus;
 import ai.tx.knowledge.center.model.DocumentsDO;
 import ai.tx.knowledge.center.repository.dao.DocumentsDao;
 import cn.hutool.core.bean.BeanUtil;
@@ -9,6 +10,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -27,6 +29,18 @@ public class DocumentsRepository {
         documentsDao.save(documentsDO);
     }
 
+    public Documents findById(String id){
+        return documentsDao.findById(id)
+                .map(documentsDO -> BeanUtil.copyProperties(documentsDO, Documents.class))
+                .orElse(null);
+    }
+
+    public Documents findByCategoryAndDocumentName(String category, String documentName){
+        return documentsDao.findFirstByCategoryAndDocumentName(category, documentName)
+                .map(documentsDO -> BeanUtil.copyProperties(documentsDO, Documents.class))
+                .orElse(null);
+    }
+
     public void delById(String id){
         documentsDao.deleteById(id);
     }
@@ -36,5 +50,57 @@ public class DocumentsRepository {
         return BeanUtil.copyToList(documentsDOS,Documents.class);
     }
 
+    public List<Documents> findAll(){
+        return BeanUtil.copyToList(documentsDao.findAll(), Documents.class);
+    }
+
+    public List<Documents> findByIds(Collection<String> ids){
+        return BeanUtil.copyToList(documentsDao.findAllById(ids), Documents.class);
+    }
+
+    public List<Documents> findByStatus(DocumentStatus status){
+        return BeanUtil.copyToList(documentsDao.findByStatus(status), Documents.class);
+    }
+
+    /**
+     * 分类下删除中的文档ID
+     */
+    public List<String> findDeletingIds(String category){
+        return documentsDao.findIdsByStatusAndCategory(DocumentStatus.DELETING, category);
+    }
+
+    /**
+     * 给定文档中删除中的文档ID
+     */
+    public List<String> findDeletingIds(Collection<String> ids){
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return documentsDao.findIdsByIdsAndStatus(ids, DocumentStatus.DELETING);
+    }
+
+    /**
+     * 批量标记为删除中，处理中的文档不标记
+     *
+     * @return 标记的文档数
+     */
+    public int markDeleting(Collection<String> ids){
+        return documentsDao.updateStatusByIds(ids, DocumentStatus.DELETING, DocumentStatus.PROCESSING);
+    }
+
+    /**
+     * 已有文档标记为处理中，处理中或删除中的文档不标记；检查状态与标记在同一条 update 中完成
+     *
+     * @return 是否标记成功，文档不存在时也返回 false
+     */
+    public boolean markProcessing(String id){
+        return documentsDao.updateStatusById(id, DocumentStatus.PROCESSING,
+                List.of(DocumentStatus.PROCESSING, DocumentStatus.DELETING)) > 0;
+    }
+
+    public void deleteByIds(Collection<String> ids){
+        documentsDao.deleteAllByIdInBatch(ids);
+    }
+
 
 }
@@ -0,0 +1,64 @@
+package ai.tx.knowledge.center.repository;
+
+import ai.tx.knowledge.center.entity.IngestCheckpoints;
+import ai.tx.knowledge.center.model.IngestCheckpointsDO;
+import ai.tx.knowledge.center.repository.dao.IngestCheckpointsDAO;
+import cn.hutool.core.bean.BeanUtil;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author tanxiong
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class IngestCheckpointsRepository {
+
+    IngestCheckpointsDAO ingestCheckpointsDAO;
+
+    public IngestCheckpoints findByDocumentId(String documentId){
+        return ingestCheckpointsDAO.findById(documentId)
+                .map(checkpointDO -> BeanUtil.copyProperties(checkpointDO, IngestCheckpoints.class))
+                .orElse(null);
+    }
+
+    public List<IngestCheckpoints> findByDocumentIds(Collection<String> documentIds){
+        return BeanUtil.copyToList(ingestCheckpointsDAO.findAllById(documentIds), IngestCheckpoints.class);
+    }
+
+    public List<IngestCheckpoints> findByNode(String node){
+        return BeanUtil.copyToList(ingestCheckpointsDAO.findByNode(node), IngestCheckpoints.class);
+    }
+
+    public void save(IngestCheckpoints checkpoint){
+        ingestCheckpointsDAO.save(BeanUtil.copyProperties(checkpoint, IngestCheckpointsDO.class));
+    }
+
+    /**
+     * 开始一次执行：执行次数加一，进度清零
+     */
+    public void startAttempt(String documentId){
+        ingestCheckpointsDAO.startAttempt(documentId);
+    }
+
+    /**
+     * 记录一个批次写入完成
+     */
+    public void updateProgress(String documentId, int chunksWritten){
+        ingestCheckpointsDAO.updateProgress(documentId, chunksWritten);
+    }
+
+    public void deleteByDocumentIds(Collection<String> documentIds){
+        ingestCheckpointsDAO.deleteAllByIdInBatch(documentIds);
+    }
+
+    public void deleteByDocumentId(String documentId){
+        ingestCheckpointsDAO.deleteById(documentId);
+    }
+}
@@ -0,0 +1,48 @@
+package ai.tx.knowledge.center.repository;
+
+import ai.tx.knowledge.center.entity.SyncFiles;
+import ai.tx.knowledge.center.model.SyncFilesDO;
+import ai.tx.knowledge.center.repository.dao.SyncFilesDAO;
+import cn.hutool.core.bean.BeanUtil;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author tanxiong
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SyncFilesRepository {
+
+    SyncFilesDAO syncFilesDAO;
+
+    /**
+     * 指定目录下（含子目录）的清单记录
+     *
+     * @param prefix 以路径分隔符结尾的目录路径
+     */
+    public List<SyncFiles> findByPathPrefix(String prefix){
+        return BeanUtil.copyToList(syncFilesDAO.findByPathStartingWith(prefix), SyncFiles.class);
+    }
+
+    /**
+     * 对应同一文档的清单记录，用于发现不同目录下的同名文件
+     */
+    public List<SyncFiles> findByCategoryAndDocumentId(String category, String documentId){
+        return BeanUtil.copyToList(syncFilesDAO.findByCategoryAndDocumentId(category, documentId), SyncFiles.class);
+    }
+
+    public void save(SyncFiles syncFiles){
+        syncFilesDAO.save(BeanUtil.copyProperties(syncFiles, SyncFilesDO.class));
+    }
+
+    public void deleteByIds(Collection<String> ids){
+        syncFilesDAO.deleteAllByIdInBatch(ids);
+    }
+}
@@ -0,0 +1,38 @@
+package ai.tx.knowledge.center.repository.dao;
+
+import ai.tx.knowledge.center.model.DocumentChunksDO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author tanxiong
+ */
+@Repository
+public interface DocumentChunksDAO extends JpaRepository<DocumentChunksDO, String> {
+
+    List<DocumentChunksDO> findByDocumentId(String documentId);
+
+    List<DocumentChunksDO> findByDocumentIdIn(Collection<String> documentIds);
+
+    List<DocumentChunksDO> findByDuplicateOfIn(Collection<String> duplicateOf);
+
+    Slice<DocumentChunksDO> findBySimhashIsNotNullAndDuplicateOfIsNull(Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from DocumentChunksDO c where c.documentId = ?1")
+    void deleteByDocumentId(String documentId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from DocumentChunksDO c where c.documentId in ?1")
+    void deleteByDocumentIds(Collection<String> documentIds);
+}
@@ -1,10 +1,16 @@
 package ai.tx.knowledge.center.repository.dao;
 
+import ai.tx.knowledge.center.enums.DocumentStatus;
 import ai.tx.knowledge.center.model.DocumentsDO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * @author tanxiong
@@ -14,4 +20,24 @@ import java.util.List;
 public interface DocumentsDao extends JpaRepository<DocumentsDO, String> {
 
     List<DocumentsDO> findByCategory(String category);
+
+    Optional<DocumentsDO> findFirstByCategoryAndDocumentName(String category, String documentName);
+
+    List<DocumentsDO> findByStatus(DocumentStatus status);
+
+    @Query("select d.id from DocumentsDO d where d.status = ?1 and (d.category = ?2 or (?2 is null and d.category is null))")
+    List<String> findIdsByStatusAndCategory(DocumentStatus status, String category);
+
+    @Query("select d.id from DocumentsDO d where d.id in ?1 and d.status = ?2")
+    List<String> findIdsByIdsAndStatus(Collection<String> ids, DocumentStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("update DocumentsDO d set d.status = ?2 where d.id in ?1 and d.status <> ?3")
+    int updateStatusByIds(Collection<String> ids, DocumentStatus status, DocumentStatus excluded);
+
+    @Transactional
+    @Modifying
+    @Query("update DocumentsDO d set d.status = ?2, d.failReason = null where d.id = ?1 and d.status not in ?3")
+    int updateStatusById(String id, DocumentStatus status, Collection<DocumentStatus> excluded);
 }
@@ -0,0 +1,31 @@
+package ai.tx.knowledge.center.repository.dao;
+
+import ai.tx.knowledge.center.model.IngestCheckpointsDO;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * @author tanxiong
+ */
+@Repository
+public interface IngestCheckpointsDAO extends JpaRepository<IngestCheckpointsDO, String> {
+
+    List<IngestCheckpointsDO> findByNode(String node);
+
+    @Transactional
+    @Modifying
+    @Query("update IngestCheckpointsDO c set c.chunksWritten = ?2, c.batchesWritten = c.batchesWritten + 1, "
+            + "c.updatedAt = CURRENT_TIMESTAMP where c.documentId = ?1")
+    void updateProgress(String documentId, int chunksWritten);
+
+    @Transactional
+    @Modifying
+    @Query("update IngestCheckpointsDO c set c.attempts = c.attempts + 1, c.chunksWritten = 0, c.batchesWritten = 0, "
+            + "c.updatedAt = CURRENT_TIMESTAMP where c.documentId = ?1")
+    void startAttempt(String documentId);
+}
@@ -0,0 +1,18 @@
+package ai.tx.knowledge.center.repository.dao;
+
+import ai.tx.knowledge.center.model.SyncFilesDO;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * @author tanxiong
+ */
+@Repository
+public interface SyncFilesDAO extends JpaRepository<SyncFilesDO, String> {
+
+    List<SyncFilesDO> findByPathStartingWith(String prefix);
+
+    List<SyncFilesDO> findByCategoryAndDocumentId(String category, String documentId);
+}
@@ -0,0 +1,269 @@
+package ai.tx.knowledge.center.service;
+
+import ai.tx.knowledge.center.entity.Documents;
+import ai.tx.knowledge.center.enums.DocumentStatus;
+import ai.tx.knowledge.center.repository.DocumentsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 向量分类元数据补写
+ * 新入库的片段在元数据中记录分类，问答按分类过滤向量。升级前入库的片段没有分类，
+ * 启动后在后台按片段ID顺序分页读取整个集合的元数据，分类缺失或与文档不一致的片段连同原向量读出，
+ * 补写分类后按原ID覆盖写入，不调用向量化接口（原向量缺失的片段除外），写入过程中片段始终可被检索。
+ *
+ * <p>一轮读取完整个集合后再读一轮，某一轮没有需要补写的片段时写入标记文件，之后不再执行；
+ * 补写完成前问答仍按文档ID过滤，结果不受影响。处理中的文档在其入库结束后的下一轮补写，
+ * 删除中或已删除的文档的片段不补写。多节点部署时标记文件应位于共享目录，或只在一个节点上启用
+ *
+ * @author tanxiong
+ */
+@Slf4j
+@Component
+public class CategoryBackfill {
+
+    /**
+     * 每页读取的片段数
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * 没有处理中的文档时，连续多少轮仍有片段需要补写即判定失败
+     */
+    private static final int MAX_REWRITE_PASSES = 3;
+
+    @Autowired
+    private DocumentsRepository documentsRepository;
+
+    @Autowired
+    private VectorRewriter vectorRewriter;
+
+    @Value("${rag.category-backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.category-backfill.marker:./data/category-backfill.done}")
+    private String marker;
+
+    @Value("${rag.category-backfill.retry-interval:30s}")
+    private Duration retryInterval;
+
+    private ExecutorService executor;
+
+    private volatile boolean completed;
+
+    private volatile String state = "PENDING";
+
+    /**
+     * 当前轮次
+     */
+    private volatile int pass;
+
+    /**
+     * 本轮已检查的片段数
+     */
+    private volatile long scanned;
+
+    /**
+     * 本轮属于处理中文档、留待下一轮补写的片段数
+     */
+    private volatile long deferred;
+
+    /**
+     * 累计补写的片段数
+     */
+    private volatile long rewritten;
+
+    private volatile String failReason;
+
+    private volatile Date finishedAt;
+
+    @PostConstruct
+    public void init() {
+        completed = Files.exists(Path.of(marker));
+        if (completed) {
+            state = "COMPLETED";
+        }
+        executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("category-backfill-"));
+        log.info("向量分类补写: enabled={}, completed={}", enabled, completed);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    /**
+     * 提交补写，已完成或正在执行时忽略
+     */
+    public synchronized void start() {
+        if (completed || "RUNNING".equals(state)) {
+            return;
+        }
+        state = "RUNNING";
+        failReason = null;
+        executor.execute(this::run);
+    }
+
+    /**
+     * 全部向量是否已记录分类，此后问答可直接按分类过滤
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state);
+        status.put("completed", completed);
+        status.put("pass", pass);
+        status.put("scanned", scanned);
+        status.put("deferred", deferred);
+        status.put("rewritten", rewritten);
+        status.put("failReason", failReason);
+        status.put("finishedAt", finishedAt);
+        return status;
+    }
+
+    private void run() {
+        try {
+            pass = 0;
+            rewritten = 0;
+            int rewritePasses = 0;
+            log.info("开始补写向量分类");
+            while (true) {
+                pass++;
+                scanned = 0;
+                deferred = 0;
+                long before = rewritten;
+                vectorRewriter.scanMetadata("", PAGE_SIZE, this::backfill);
+                long passRewritten = rewritten - before;
+                log.info("向量分类补写第 {} 轮: 检查片段 {} 个, 补写 {} 个, 处理中的文档待补写 {} 个",
+                        pass, scanned, passRewritten, deferred);
+                if (passRewritten == 0 && deferred == 0) {
+                    // 整轮没有缺少分类的片段
+                    break;
+                }
+                if (deferred > 0) {
+                    // 处理中的文档入库结束后在下一轮补写
+                    rewritePasses = 0;
+                    Thread.sleep(retryInterval.toMillis());
+                } else if (++rewritePasses >= MAX_REWRITE_PASSES) {
+                    throw new IllegalStateException("连续 " + rewritePasses + " 轮补写后仍有片段缺少分类: " + passRewritten + " 个");
+                }
+            }
+            Path path = Path.of(marker);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, new Date() + "\n");
+            completed = true;
+            state = "COMPLETED";
+            log.info("向量分类补写完成: 共 {} 轮, 补写片段 {} 个", pass, rewritten);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = "FAILED";
+            failReason = "补写被中断，重启后继续";
+        } catch (Exception e) {
+            // 已补写的片段保留，重启后或再次提交时从头检查，已有分类的片段不再写入
+            log.error("向量分类补写失败: 第 {} 轮, 已补写 {} 个片段", pass, rewritten, e);
+            state = "FAILED";
+            failReason = e.getMessage();
+        } finally {
+            finishedAt = new Date();
+        }
+    }
+
+    /**
+     * 补写一页片段中分类缺失或与文档不一致的片段
+     *
+     * @param page 片段ID → 元数据
+     */
+    private void backfill(Map<String, Map<String, Object>> page) {
+        scanned += page.size();
+        Map<String, Documents> documents = findDocuments(page.values());
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> entry : page.entrySet()) {
+            Documents document = documents.get(String.valueOf(entry.getValue().get("documentId")));
+            // 删除中或已删除的文档的片段随文档删除，检索时也不会返回
+            if (document == null || document.getStatus() == DocumentStatus.DELETING
+                    || Objects.equals(entry.getValue().get("category"), document.getCategory())) {
+                continue;
+            }
+            // 重新入库会删除不再出现的片段，覆盖写入会把它们写回，等入库结束后按新的片段补写
+            if (document.getStatus() == DocumentStatus.PROCESSING) {
+                deferred++;
+                continue;
+            }
+            missing.add(entry.getKey());
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Map<String, VectorRewriter.StoredVector> stored = vectorRewriter.readStored(missing);
+        // 读取期间文档状态可能已变化，写回前重新检查
+        Map<String, Documents> current = findDocuments(stored.values().stream()
+                .map(vector -> vector.document().getMetadata()).toList());
+        List<Document> rewrittenVectors = new ArrayList<>();
+        Map<String, List<Float>> embeddings = new HashMap<>();
+        for (VectorRewriter.StoredVector vector : stored.values()) {
+            Documents document = current.get(String.valueOf(vector.document().getMetadata().get("documentId")));
+            if (document == null || document.getStatus() == DocumentStatus.DELETING) {
+                continue;
+            }
+            if (document.getStatus() == DocumentStatus.PROCESSING) {
+                deferred++;
+                continue;
+            }
+            Map<String, Object> metadata = new HashMap<>(vector.document().getMetadata());
+            metadata.put("category", document.getCategory());
+            rewrittenVectors.add(new Document(vector.document().getId(), vector.document().getText(), metadata));
+            embeddings.put(vector.document().getId(), vector.embedding());
+        }
+        vectorRewriter.rewrite(rewrittenVectors, embeddings);
+        rewritten += rewrittenVectors.size();
+        log.debug("补写分类: {} 个片段", rewrittenVectors.size());
+    }
+
+    private Map<String, Documents> findDocuments(Collection<Map<String, Object>> metadata) {
+        return documentsRepository.findByIds(metadata.stream()
+                        .map(value -> String.valueOf(value.get("documentId")))
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Documents::getId, Function.identity()));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("向量分类补写线程关闭超时");
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package ai.tx.knowledge.center.service;
 
 
+import ai.tx.knowledge.center.common.HashUtils;
 import ai.tx.knowledge.center.entity.ChatMessages;
 import ai.tx.knowledge.center.repository.ChatMessagesRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -13,9 +14,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -157,21 +155,8 @@ public class ChatStorageMemory implements ChatMemory {
      * 生成消息内容的唯一hash（用于去重）
      */
     private String generateContentHash(String content, String messageType) {
-        try {
-            String input = messageType + ":" + content;
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input.getBytes(StandardCharsets.UTF_8));
-            
-            // 转换为16进制字符串
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            log.warn("MD5算法不可用，使用hashCode替代", e);
-            return messageType + ":" + content.hashCode();
-        }
+        // 沿用MD5，与已入库消息的hash保持一致
+        return HashUtils.md5Hex(messageType + ":" + content);
     }
 
 
@@ -0,0 +1,426 @@
+package ai.tx.knowledge.center.service;
+
+import ai.tx.knowledge.center.entity.DocumentChunks;
+import ai.tx.knowledge.center.entity.Documents;
+import ai.tx.knowledge.center.enums.DocumentStatus;
+import ai.tx.knowledge.center.repository.DocumentChunksRepository;
+import ai.tx.knowledge.center.repository.DocumentsRepository;
+import ai.tx.knowledge.center.service.chunking.SimHash;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 近似重复片段检测
+ * 每个分类维护一个片段 SimHash 指纹的内存索引，入库时与同分类其他文档的片段比对，
+ * 汉明距离不超过阈值的片段不再向量化，只在台账中记录链接（duplicate_of），检索时由被链接的片段代表。
+ *
+ * <p>指纹按位分成 max-distance + 1 段，距离不超过阈值的两个指纹至少有一段完全相同，
+ * 查找时只比对与待查指纹某一段相同的候选，不需要与全部片段逐一比对。
+ *
+ * <p>被链接的片段所属文档删除或更新时，向量转给第一个链接它的文档：按新文档的元数据覆盖写入（ID不变，
+ * 启用向量缓存时按内容哈希命中缓存），该链接记录改为普通片段，其余链接继续有效。
+ * 向量先覆盖写入，台账在一个事务中更新；台账更新失败时向量恢复原归属，重试时重新转移。
+ * 被链接的片段在向量库中读取不到时整批不转移并抛出异常，删除或更新失败，不会丢失链接方的内容。
+ *
+ * @author tanxiong
+ */
+@Slf4j
+@Component
+public class ChunkDeduplicator {
+
+    /**
+     * 每段在索引中的桶数上限（位数）
+     */
+    private static final int MAX_BUCKET_BITS = 14;
+
+    /**
+     * 台账分页读取、按ID查询链接时每次的数量
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    @Autowired
+    private DocumentsRepository documentsRepository;
+
+    @Autowired
+    private DocumentChunksRepository documentChunksRepository;
+
+    @Autowired
+    private VectorRewriter vectorRewriter;
+
+    /**
+     * 是否启用近似重复检测；关闭时仍计算并记录指纹，之后开启可直接使用
+     */
+    @Value("${rag.dedup.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 判定为近似重复的最大汉明距离（64位指纹）
+     */
+    @Value("${rag.dedup.max-distance:6}")
+    private int maxDistance;
+
+    /**
+     * 参与检测的最短片段（字符数），过短的片段指纹不可靠
+     */
+    @Value("${rag.dedup.min-length:100}")
+    private int minLength;
+
+    private int[] bandShifts;
+
+    private long[] bandMasks;
+
+    /**
+     * 分类 → 指纹索引，启动加载完成前不检测
+     */
+    private final Map<String, FingerprintIndex> indexes = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    @PostConstruct
+    public void init() {
+        maxDistance = Math.max(0, Math.min(maxDistance, 10));
+        int bands = maxDistance + 1;
+        bandShifts = new int[bands];
+        bandMasks = new long[bands];
+        int shift = 0;
+        for (int band = 0; band < bands; band++) {
+            int bits = 64 / bands + (band < 64 % bands ? 1 : 0);
+            bandShifts[band] = shift;
+            bandMasks[band] = bits == 64 ? -1L : (1L << bits) - 1;
+            shift += bits;
+        }
+        log.info("近似重复检测: enabled={}, maxDistance={}, minLength={}", enabled, maxDistance, minLength);
+    }
+
+    /**
+     * 启动时从台账加载已有片段的指纹，删除中的文档不加载
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndexes() {
+        if (!enabled) {
+            return;
+        }
+        Map<String, String> categories = new HashMap<>();
+        for (Documents document : documentsRepository.findAll()) {
+            if (document.getStatus() != DocumentStatus.DELETING) {
+                categories.put(document.getId(), categoryKey(document.getCategory()));
+            }
+        }
+        int loaded = 0;
+        Slice<DocumentChunks> page;
+        int pageNumber = 0;
+        do {
+            page = documentChunksRepository.findFingerprinted(pageNumber++, PAGE_SIZE);
+            for (DocumentChunks chunk : page) {
+                String category = categories.get(chunk.getDocumentId());
+                if (category != null) {
+                    index(category).add(chunk.getId(), chunk.getDocumentId(), chunk.getSimhash());
+                    loaded++;
+                }
+            }
+        } while (page.hasNext());
+        ready = true;
+        log.info("近似重复检测索引加载完成: {} 个分类, {} 个片段", indexes.size(), loaded);
+    }
+
+    public boolean isEnabled() {
+        return enabled && ready;
+    }
+
+    /**
+     * 计算片段指纹，过短的片段返回 null
+     */
+    public Long fingerprint(String text) {
+        if (text == null || text.length() < minLength) {
+            return null;
+        }
+        long fingerprint = SimHash.fingerprint(text);
+        return fingerprint != 0 ? fingerprint : null;
+    }
+
+    /**
+     * 查找同分类其他文档中最相近的片段
+     *
+     * @return 被链接的片段ID，没有近似重复或未启用时返回 null
+     */
+    public String findDuplicate(String category, String documentId, long fingerprint) {
+        if (!isEnabled()) {
+            return null;
+        }
+        FingerprintIndex index = indexes.get(categoryKey(category));
+        return index != null ? index.nearest(documentId, fingerprint) : null;
+    }
+
+    /**
+     * 片段写入向量库后加入索引
+     */
+    public void add(String category, String documentId, String chunkId, long fingerprint) {
+        if (enabled) {
+            index(categoryKey(category)).add(chunkId, documentId, fingerprint);
+        }
+    }
+
+    /**
+     * 文档删除前调用：移出索引，并把被其他文档链接的片段转给链接方
+     * 调用后可按 documentId 删除向量和台账，已转移的片段不再属于这些文档
+     */
+    public void removeDocuments(Collection<String> documentIds) {
+        Set<String> removed = new HashSet<>(documentIds);
+        indexes.values().forEach(index -> index.removeDocuments(removed));
+        transfer(documentChunksRepository.findByDocumentIds(documentIds), removed);
+    }
+
+    /**
+     * 文档更新时删除不再出现的片段前调用：移出索引，并把被其他文档链接的片段转给链接方
+     *
+     * @return 已转移、不应删除的片段ID
+     */
+    public Set<String> removeChunks(String documentId, List<DocumentChunks> chunks) {
+        Set<String> chunkIds = chunks.stream().map(DocumentChunks::getId).collect(Collectors.toSet());
+        indexes.values().forEach(index -> index.removeChunks(chunkIds));
+        return transfer(chunks, Set.of(documentId));
+    }
+
+    /**
+     * @param excluded 同时删除的文档，其中的链接不接收转移
+     * @return 已转移的片段ID
+     */
+    private Set<String> transfer(List<DocumentChunks> chunks, Set<String> excluded) {
+        Map<String, DocumentChunks> canonical = chunks.stream()
+                .filter(chunk -> chunk.getDuplicateOf() == null)
+                .collect(Collectors.toMap(DocumentChunks::getId, Function.identity(), (a, b) -> a));
+        if (canonical.isEmpty()) {
+            return Set.of();
+        }
+        List<DocumentChunks> links = new ArrayList<>();
+        List<String> ids = new ArrayList<>(canonical.keySet());
+        for (int from = 0; from < ids.size(); from += PAGE_SIZE) {
+            for (DocumentChunks link : documentChunksRepository.findByDuplicateOf(ids.subList(from, Math.min(ids.size(), from + PAGE_SIZE)))) {
+                if (!excluded.contains(link.getDocumentId())) {
+                    links.add(link);
+                }
+            }
+        }
+        if (links.isEmpty()) {
+            return Set.of();
+        }
+        // 文档记录已不存在的链接是残留的台账，不接收转移
+        Map<String, Documents> heirDocuments = documentsRepository.findByIds(links.stream()
+                        .map(DocumentChunks::getDocumentId).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Documents::getId, Function.identity()));
+        // 每个被链接的片段由ID最小的链接接收
+        Map<String, DocumentChunks> heirs = new HashMap<>();
+        for (DocumentChunks link : links) {
+            if (heirDocuments.containsKey(link.getDocumentId())) {
+                heirs.merge(link.getDuplicateOf(), link, (a, b) -> a.getId().compareTo(b.getId()) <= 0 ? a : b);
+            }
+        }
+        if (heirs.isEmpty()) {
+            return Set.of();
+        }
+
+        // 向量ID即台账中的片段ID，上次转移中断时向量可能已归属链接方，按ID读取不受归属影响
+        Map<String, Document> vectors = vectorRewriter.read(heirs.keySet());
+        List<String> missing = heirs.keySet().stream().filter(id -> !vectors.containsKey(id)).sorted().toList();
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("被链接的片段在向量库中不存在，无法转给链接方: " + missing.size() + " 个, 如 " + missing.get(0));
+        }
+
+        List<Document> rewritten = new ArrayList<>();
+        List<Document> originals = new ArrayList<>();
+        List<DocumentChunks> ledger = new ArrayList<>();
+        List<String> consumedLinks = new ArrayList<>();
+        Set<String> transferred = new HashSet<>();
+        for (Map.Entry<String, DocumentChunks> entry : heirs.entrySet()) {
+            DocumentChunks heir = entry.getValue();
+            Document vector = vectors.get(entry.getKey());
+            Documents heirDocument = heirDocuments.get(heir.getDocumentId());
+            Map<String, Object> original = new HashMap<>(vector.getMetadata());
+            original.remove("distance");
+            originals.add(new Document(vector.getId(), vector.getText(), original));
+            Map<String, Object> metadata = new HashMap<>(original);
+            metadata.put("documentId", heirDocument.getId());
+            metadata.put("source", heirDocument.getDocumentName());
+            metadata.put("category", heirDocument.getCategory());
+            rewritten.add(new Document(vector.getId(), vector.getText(), metadata));
+
+            DocumentChunks chunk = canonical.get(entry.getKey());
+            // 内容哈希仍为向量原文的哈希，与向量库元数据一致
+            chunk.setDocumentId(heir.getDocumentId());
+            ledger.add(chunk);
+            consumedLinks.add(heir.getId());
+            transferred.add(chunk.getId());
+        }
+        // 向量ID不变，其余链接仍指向它
+        vectorRewriter.rewrite(rewritten);
+        try {
+            documentChunksRepository.transfer(ledger, consumedLinks);
+        } catch (RuntimeException e) {
+            try {
+                vectorRewriter.rewrite(originals);
+            } catch (RuntimeException restore) {
+                log.warn("片段转移的台账更新失败后恢复向量归属失败，重试时按链接方文档读取向量", restore);
+            }
+            throw e;
+        }
+        for (DocumentChunks chunk : ledger) {
+            if (chunk.getSimhash() != null) {
+                add(heirDocuments.get(chunk.getDocumentId()).getCategory(), chunk.getDocumentId(), chunk.getId(), chunk.getSimhash());
+            }
+        }
+        log.info("{} 个被链接的片段已转给链接方文档", transferred.size());
+        return transferred;
+    }
+
+    private FingerprintIndex index(String category) {
+        return indexes.computeIfAbsent(category, key -> new FingerprintIndex());
+    }
+
+    private static String categoryKey(String category) {
+        return Objects.requireNonNullElse(category, "");
+    }
+    /**
+     * 单个分类的指纹索引
+     * 每段一个哈希表：buckets[段][桶] 为该段取值落在桶内的条目序号，顺序存放以便连续扫描；
+     * 删除只清空条目，删除过半时重建
+     */
+    private class FingerprintIndex {
+
+        private final int bucketBits = Math.min(MAX_BUCKET_BITS, Long.bitCount(bandMasks[bandMasks.length - 1]));
+
+        private long[] fingerprints = new long[16];
+
+        private String[] chunkIds = new String[16];
+
+        private String[] documentIds = new String[16];
+
+        private int[][][] buckets;
+
+        private int[][] bucketSizes;
+
+        private int size = 0;
+
+        private int removed = 0;
+
+        FingerprintIndex() {
+            clearBuckets();
+        }
+
+        synchronized String nearest(String documentId, long fingerprint) {
+            String nearest = null;
+            int nearestDistance = maxDistance + 1;
+            for (int band = 0; band < buckets.length; band++) {
+                int bucket = bucket(band, fingerprint);
+                int[] slots = buckets[band][bucket];
+                for (int i = 0, count = bucketSizes[band][bucket]; i < count; i++) {
+                    int slot = slots[i];
+                    int distance = SimHash.distance(fingerprint, fingerprints[slot]);
+                    if (distance < nearestDistance && chunkIds[slot] != null && !documentId.equals(documentIds[slot])) {
+                        nearest = chunkIds[slot];
+                        nearestDistance = distance;
+                    }
+                }
+            }
+            return nearest;
+        }
+
+        synchronized void add(String chunkId, String documentId, long fingerprint) {
+            if (size == fingerprints.length) {
+                fingerprints = Arrays.copyOf(fingerprints, size * 2);
+                chunkIds = Arrays.copyOf(chunkIds, size * 2);
+                documentIds = Arrays.copyOf(documentIds, size * 2);
+            }
+            int slot = size++;
+            fingerprints[slot] = fingerprint;
+            chunkIds[slot] = chunkId;
+            documentIds[slot] = documentId;
+            for (int band = 0; band < buckets.length; band++) {
+                int bucket = bucket(band, fingerprint);
+                int[] slots = buckets[band][bucket];
+                int count = bucketSizes[band][bucket];
+                if (slots == null) {
+                    slots = buckets[band][bucket] = new int[4];
+                } else if (count == slots.length) {
+                    slots = buckets[band][bucket] = Arrays.copyOf(slots, count * 2);
+                }
+                slots[count] = slot;
+                bucketSizes[band][bucket] = count + 1;
+            }
+        }
+
+        synchronized void removeDocuments(Set<String> removedDocumentIds) {
+            for (int slot = 0; slot < size; slot++) {
+                if (chunkIds[slot] != null && removedDocumentIds.contains(documentIds[slot])) {
+                    remove(slot);
+                }
+            }
+            compactIfSparse();
+        }
+
+        synchronized void removeChunks(Set<String> removedChunkIds) {
+            for (int slot = 0; slot < size; slot++) {
+                if (chunkIds[slot] != null && removedChunkIds.contains(chunkIds[slot])) {
+                    remove(slot);
+                }
+            }
+            compactIfSparse();
+        }
+
+        private void remove(int slot) {
+            chunkIds[slot] = null;
+            documentIds[slot] = null;
+            removed++;
+        }
+
+        private void compactIfSparse() {
+            if (removed < 1024 || removed * 2 < size) {
+                return;
+            }
+            long[] oldFingerprints = fingerprints;
+            String[] oldChunkIds = chunkIds;
+            String[] oldDocumentIds = documentIds;
+            int oldSize = size;
+            int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, oldSize - removed)) * 2);
+            fingerprints = new long[capacity];
+            chunkIds = new String[capacity];
+            documentIds = new String[capacity];
+            clearBuckets();
+            size = 0;
+            removed = 0;
+            for (int slot = 0; slot < oldSize; slot++) {
+                if (oldChunkIds[slot] != null) {
+                    add(oldChunkIds[slot], oldDocumentIds[slot], oldFingerprints[slot]);
+                }
+            }
+        }
+
+        private void clearBuckets() {
+            buckets = new int[bandMasks.length][1 << bucketBits][];
+            bucketSizes = new int[bandMasks.length][1 << bucketBits];
+        }
+
+        private int bucket(int band, long fingerprint) {
+            return (int) ((fingerprint >>> bandShifts[band]) & bandMasks[band]) & ((1 << bucketBits) - 1);
+        }
+    }
+}
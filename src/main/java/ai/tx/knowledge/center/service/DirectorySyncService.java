@@ -0,0 +1,540 @@
+package ai.tx.knowledge.center.service;
+
+import ai.tx.knowledge.center.common.HashUtils;
+import ai.tx.knowledge.center.entity.Documents;
+import ai.tx.knowledge.center.entity.SyncFiles;
+import ai.tx.knowledge.center.enums.DocumentStatus;
+import ai.tx.knowledge.center.repository.DocumentsRepository;
+import ai.tx.knowledge.center.repository.SyncFilesRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 目录同步
+ * 监听配置的同步目录（含子目录），文件新增、修改、删除后提交入库或删除对应文档。
+ * 同步清单记录每个文件上次入库时的修改时间、大小和内容哈希：修改时间和大小都未变化的文件不读取内容，
+ * 变化的文件再比较内容哈希，只有内容确实变化的文件才重新入库（作为原文档的新版本，未变化的片段直接复用）。
+ *
+ * <p>目录事件在最后一次变化后等待 settle-time 再扫描该目录，避免处理写入中的文件；
+ * 共享文件系统（NFS/SMB）上其他主机的修改通常不产生事件，由 rescan-interval 定期全量扫描兜底，
+ * 全量扫描同样只对变化的文件读取内容。
+ *
+ * <p>同步目录不可访问（例如挂载断开）时跳过扫描，不会删除文档。多节点部署时只在一个节点上启用
+ *
+ * @author tanxiong
+ */
+@Slf4j
+@Component
+public class DirectorySyncService {
+
+    /**
+     * 保留的同步记录数
+     */
+    private static final int MAX_REPORTS = 20;
+
+    @Autowired
+    private KnowledgeFileService knowledgeFileService;
+
+    @Autowired
+    private DocumentsRepository documentsRepository;
+
+    @Autowired
+    private SyncFilesRepository syncFilesRepository;
+
+    @Value("${rag.sync.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 同步目录，格式为 分类=目录，多个用逗号分隔
+     */
+    @Value("${rag.sync.roots:}")
+    private List<String> roots;
+
+    /**
+     * 目录最后一次变化后等待的时间
+     */
+    @Value("${rag.sync.settle-time:10s}")
+    private Duration settleTime;
+
+    /**
+     * 全量扫描间隔，0表示只在启动时扫描一次
+     */
+    @Value("${rag.sync.rescan-interval:1h}")
+    private Duration rescanInterval;
+
+    /**
+     * 文件删除后是否删除对应文档
+     */
+    @Value("${rag.sync.delete-missing:true}")
+    private boolean deleteMissing;
+
+    /**
+     * 同步目录 → 分类
+     */
+    private final Map<Path, String> categories = new LinkedHashMap<>();
+
+    private WatchService watchService;
+
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+
+    /**
+     * 有变化、等待扫描的目录 → 最后一次变化的时间
+     */
+    private final Map<Path, Long> pendingDirs = new ConcurrentHashMap<>();
+
+    /**
+     * 扫描在该线程中依次执行
+     */
+    private ScheduledExecutorService scheduler;
+
+    private Thread watcher;
+
+    private final Deque<SyncReport> reports = new ArrayDeque<>();
+
+    /**
+     * 一次扫描的结果
+     */
+    @Getter
+    public static class SyncReport {
+
+        /**
+         * 扫描的目录
+         */
+        private final String directory;
+
+        private final boolean fullScan;
+
+        private final Date startedAt = new Date();
+
+        private Date finishedAt;
+
+        private int scanned;
+
+        private int unchanged;
+
+        private int added;
+
+        private int updated;
+
+        private int deleted;
+
+        /**
+         * 与同分类其他目录中的文件重名，未入库
+         */
+        private int skipped;
+
+        private int failed;
+
+        SyncReport(String directory, boolean fullScan) {
+            this.directory = directory;
+            this.fullScan = fullScan;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        for (String root : roots) {
+            if (root.isBlank()) {
+                continue;
+            }
+            int separator = root.indexOf('=');
+            if (separator <= 0 || separator == root.length() - 1) {
+                throw new IllegalArgumentException("同步目录格式应为 分类=目录: " + root);
+            }
+            Path dir = Path.of(root.substring(separator + 1).trim()).toAbsolutePath().normalize();
+            categories.put(dir, root.substring(0, separator).trim());
+        }
+        if (categories.isEmpty()) {
+            log.warn("目录同步已启用，但未配置同步目录");
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path root : categories.keySet()) {
+            if (Files.isDirectory(root)) {
+                registerTree(root);
+            } else {
+                log.warn("同步目录不存在或不可访问: {}", root);
+            }
+        }
+        watcher = new Thread(this::watch, "sync-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("sync-"));
+        if (rescanInterval.isZero()) {
+            scheduler.execute(this::scanAll);
+        } else {
+            scheduler.scheduleWithFixedDelay(this::scanAll, 0, rescanInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::scanPending, 1, 1, TimeUnit.SECONDS);
+        log.info("目录同步已启动: {}, 监听 {} 个目录, settleTime={}, rescanInterval={}",
+                categories, watchedDirs.size(), settleTime, rescanInterval);
+    }
+
+    /**
+     * 立即全量扫描
+     *
+     * @return 未启用同步时返回 false
+     */
+    public boolean triggerScan() {
+        if (scheduler == null) {
+            return false;
+        }
+        scheduler.execute(this::scanAll);
+        return true;
+    }
+
+    /**
+     * 同步状态及最近的扫描结果
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", scheduler != null);
+        Map<String, String> rootCategories = new LinkedHashMap<>();
+        categories.forEach((root, category) -> rootCategories.put(root.toString(), category));
+        status.put("roots", rootCategories);
+        status.put("watchedDirectories", watchedDirs.size());
+        status.put("pendingDirectories", pendingDirs.size());
+        synchronized (reports) {
+            status.put("reports", new ArrayList<>(reports));
+        }
+        return status;
+    }
+
+    /**
+     * 监听线程：记录有变化的目录，新建的子目录加入监听
+     */
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                Path dir = watchedDirs.get(key);
+                if (dir == null) {
+                    key.reset();
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // 事件丢失，整个同步目录重新扫描
+                        markPending(rootOf(dir));
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                            && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS) && !isHidden(child)) {
+                        try {
+                            registerTree(child);
+                        } catch (IOException e) {
+                            log.warn("同步子目录监听失败: {}", child, e);
+                        }
+                    }
+                    markPending(dir);
+                }
+                if (!key.reset()) {
+                    watchedDirs.remove(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 关闭时退出
+        }
+    }
+
+    private void registerTree(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) throws IOException {
+                if (!subDir.equals(dir) && isHidden(subDir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = subDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, subDir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("同步目录读取失败: {}, {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void markPending(Path dir) {
+        pendingDirs.put(dir, System.currentTimeMillis());
+    }
+
+    /**
+     * 扫描最后一次变化已超过 settle-time 的目录，已有上级目录待扫描的不重复扫描
+     */
+    private void scanPending() {
+        try {
+            long settledBefore = System.currentTimeMillis() - settleTime.toMillis();
+            Map<Path, Long> settled = new HashMap<>();
+            pendingDirs.forEach((dir, changedAt) -> {
+                if (changedAt <= settledBefore) {
+                    settled.put(dir, changedAt);
+                }
+            });
+            for (Map.Entry<Path, Long> entry : settled.entrySet()) {
+                Path dir = entry.getKey();
+                // 扫描期间又有变化的目录留到下次
+                pendingDirs.remove(dir, entry.getValue());
+                if (settled.keySet().stream().anyMatch(other -> !other.equals(dir) && dir.startsWith(other))) {
+                    continue;
+                }
+                scan(rootOf(dir), dir, false);
+            }
+        } catch (RuntimeException e) {
+            log.error("目录同步扫描失败", e);
+        }
+    }
+
+    private void scanAll() {
+        for (Path root : categories.keySet()) {
+            try {
+                scan(root, root, true);
+            } catch (RuntimeException e) {
+                log.error("目录同步扫描失败: {}", root, e);
+            }
+        }
+    }
+
+    /**
+     * 比对目录（含子目录）中的文件与同步清单，提交新增和变化的文件，删除已不存在的文件对应的文档
+     */
+    private void scan(Path root, Path dir, boolean fullScan) {
+        if (root == null) {
+            return;
+        }
+        if (!Files.isDirectory(root)) {
+            log.warn("同步目录不可访问，跳过本次扫描: {}", root);
+            return;
+        }
+        String category = categories.get(root);
+        SyncReport report = new SyncReport(dir.toString(), fullScan);
+        Map<String, SyncFiles> manifest = syncFilesRepository.findByPathPrefix(dir + File.separator).stream()
+                .collect(Collectors.toMap(SyncFiles::getPath, Function.identity(), (a, b) -> a));
+        Set<String> supportedTypes = knowledgeFileService.getSupportedTypes().keySet();
+        Set<String> present = new HashSet<>();
+
+        if (Files.isDirectory(dir)) {
+            try {
+                Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) {
+                        return !subDir.equals(dir) && isHidden(subDir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (!attrs.isRegularFile() || isHidden(file) || !supportedTypes.contains(fileType(file))) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        String path = file.toString();
+                        present.add(path);
+                        report.scanned++;
+                        syncFile(file, attrs, manifest.get(path), category, report);
+                        return Thread.currentThread().isInterrupted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        // 读取失败的文件不视为删除
+                        log.warn("同步文件读取失败: {}, {}", file, e.getMessage());
+                        present.add(file.toString());
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                log.error("同步目录扫描失败: {}", dir, e);
+                return;
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+
+        List<SyncFiles> missing = manifest.values().stream()
+                .filter(entry -> !present.contains(entry.getPath()))
+                .toList();
+        if (deleteMissing && !missing.isEmpty()) {
+            removeMissing(missing, report);
+        }
+
+        report.finishedAt = new Date();
+        synchronized (reports) {
+            reports.addFirst(report);
+            while (reports.size() > MAX_REPORTS) {
+                reports.removeLast();
+            }
+        }
+        if (report.added + report.updated + report.deleted + report.failed > 0 || fullScan) {
+            log.info("目录同步完成: {}, 扫描 {} 个文件, 新增 {} 个, 更新 {} 个, 删除 {} 个, 未变化 {} 个, 跳过 {} 个, 失败 {} 个",
+                    dir, report.scanned, report.added, report.updated, report.deleted, report.unchanged,
+                    report.skipped, report.failed);
+        }
+    }
+
+    /**
+     * 同步单个文件，失败的文件不更新清单，下次扫描时重试
+     */
+    private void syncFile(Path file, BasicFileAttributes attrs, SyncFiles entry, String category, SyncReport report) {
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        if (entry != null && entry.getFileSize() == size && entry.getLastModified() == lastModified) {
+            report.unchanged++;
+            return;
+        }
+        try {
+            String contentHash = HashUtils.sha256Hex(file);
+            if (entry != null && contentHash.equals(entry.getContentHash())) {
+                // 只有修改时间变化，不重新入库
+                entry.setFileSize(size);
+                entry.setLastModified(lastModified);
+                syncFilesRepository.save(entry);
+                report.unchanged++;
+                return;
+            }
+            if (entry == null && isNameTaken(file, category)) {
+                log.warn("同一分类下已有同名的同步文件，跳过: {}", file);
+                report.skipped++;
+                return;
+            }
+
+            String documentId = knowledgeFileService.submitLocalFile(file, category,
+                    entry != null ? entry.getDocumentId() : null);
+
+            if (entry == null) {
+                entry = new SyncFiles();
+                entry.setId(HashUtils.sha256Hex(file.toString()));
+                entry.setPath(file.toString());
+                entry.setCategory(category);
+                report.added++;
+            } else {
+                report.updated++;
+            }
+            entry.setDocumentId(documentId);
+            entry.setFileSize(size);
+            entry.setLastModified(lastModified);
+            entry.setContentHash(contentHash);
+            entry.setSyncedAt(new Date());
+            syncFilesRepository.save(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("同步文件提交失败: {}, {}", file, e.getMessage());
+            report.failed++;
+        }
+    }
+
+    /**
+     * 文档以文件名命名，同一分类下其他目录中已同步的同名文件占用了该文档
+     */
+    private boolean isNameTaken(Path file, String category) {
+        Documents existing = documentsRepository.findByCategoryAndDocumentName(category, file.getFileName().toString());
+        return existing != null && syncFilesRepository.findByCategoryAndDocumentId(category, existing.getId()).stream()
+                .anyMatch(other -> !other.getPath().equals(file.toString()));
+    }
+
+    /**
+     * 删除已不存在的文件对应的文档，处理中的文档保留清单记录，下次扫描时再删除
+     */
+    private void removeMissing(List<SyncFiles> missing, SyncReport report) {
+        Map<String, Documents> documents = documentsRepository.findByIds(missing.stream()
+                        .map(SyncFiles::getDocumentId).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Documents::getId, Function.identity()));
+        List<String> documentIds = new ArrayList<>();
+        List<String> entryIds = new ArrayList<>();
+        for (SyncFiles entry : missing) {
+            Documents document = documents.get(entry.getDocumentId());
+            if (document != null && document.getStatus() == DocumentStatus.PROCESSING) {
+                continue;
+            }
+            if (document != null && document.getStatus() != DocumentStatus.DELETING) {
+                documentIds.add(document.getId());
+            }
+            entryIds.add(entry.getId());
+        }
+        if (!documentIds.isEmpty()) {
+            knowledgeFileService.deleteDocuments(documentIds);
+        }
+        if (!entryIds.isEmpty()) {
+            syncFilesRepository.deleteByIds(entryIds);
+        }
+        report.deleted += entryIds.size();
+    }
+
+    private Path rootOf(Path dir) {
+        return categories.keySet().stream().filter(dir::startsWith).findFirst().orElse(null);
+    }
+
+    private static boolean isHidden(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    private static String fileType(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        if (scheduler == null) {
+            return;
+        }
+        watcher.interrupt();
+        watchService.close();
+        scheduler.shutdownNow();
+        if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("目录同步线程关闭超时");
+        }
+    }
+}
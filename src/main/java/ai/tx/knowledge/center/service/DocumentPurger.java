@@ -0,0 +1,271 @@
+package ai.tx.knowledge.center.service;
+
+import ai.tx.knowledge.center.entity.Documents;
+import ai.tx.knowledge.center.entity.IngestCheckpoints;
+import ai.tx.knowledge.center.enums.DocumentStatus;
+import ai.tx.knowledge.center.repository.DocumentChunksRepository;
+import ai.tx.knowledge.center.repository.DocumentsRepository;
+import ai.tx.knowledge.center.repository.IngestCheckpointsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 文档批量删除
+ * 文档先在数据库中整体标记为删除中（各节点的检索和问答立即不再返回），再由后台单线程按批次删除：
+ * 每批用一个 documentId in [...] 条件删除向量，随后删除片段台账、断点和文档记录，批次之间按配置间隔暂停，
+ * 避免大量删除占满向量库影响检索延迟。
+ *
+ * <p>进程退出时仍处于删除中的文档在启动时重新提交删除
+ *
+ * @author tanxiong
+ */
+@Slf4j
+@Component
+public class DocumentPurger {
+
+    /**
+     * 保留的删除任务记录数
+     */
+    private static final int MAX_TASKS = 100;
+
+    @Autowired
+    private VectorStore vectorStore;
+
+    @Autowired
+    private DocumentsRepository documentsRepository;
+
+    @Autowired
+    private DocumentChunksRepository documentChunksRepository;
+
+    @Autowired
+    private IngestCheckpointsRepository ingestCheckpointsRepository;
+
+    @Autowired
+    private SpoolStore spoolStore;
+
+    @Autowired
+    private ChunkDeduplicator chunkDeduplicator;
+
+    @Autowired
+    private KnowledgeGeneration knowledgeGeneration;
+
+    @Value("${rag.purge.batch-size:200}")
+    private int batchSize;
+
+    @Value("${rag.purge.batch-interval:500ms}")
+    private Duration batchInterval;
+
+    private ExecutorService executor;
+
+    private final Map<String, PurgeTask> tasks = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PurgeTask> eldest) {
+            return size() > MAX_TASKS;
+        }
+    };
+
+    /**
+     * 删除任务进度
+     */
+    @Getter
+    public static class PurgeTask {
+
+        private final String taskId = UUID.randomUUID().toString();
+
+        private final String description;
+
+        private final int total;
+
+        private volatile int deleted;
+
+        /**
+         * 处理中的文档不删除
+         */
+        private final int skipped;
+
+        private volatile String status = "PENDING";
+
+        private volatile String failReason;
+
+        private final Date createdAt = new Date();
+
+        private volatile Date finishedAt;
+
+        PurgeTask(String description, int total, int skipped) {
+            this.description = description;
+            this.total = total;
+            this.skipped = skipped;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        batchSize = Math.max(1, batchSize);
+        executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("purge-"));
+        log.info("批量删除初始化完成: batchSize={}, batchInterval={}", batchSize, batchInterval);
+    }
+
+    /**
+     * 标记并提交删除，处理中的文档跳过
+     *
+     * @param documents   待删除的文档
+     * @param description 任务说明
+     */
+    public PurgeTask submit(List<Documents> documents, String description) {
+        List<String> ids = documents.stream()
+                .filter(document -> document.getStatus() != DocumentStatus.PROCESSING)
+                .map(Documents::getId)
+                .toList();
+        List<String> marked = markDeleting(ids);
+        Set<String> categories = documents.stream().map(Documents::getCategory).collect(Collectors.toSet());
+        // 标记后检索即不再返回这些文档
+        knowledgeGeneration.advance(categories);
+        PurgeTask task = new PurgeTask(description, marked.size(), documents.size() - marked.size());
+        synchronized (tasks) {
+            tasks.put(task.getTaskId(), task);
+        }
+        if (marked.isEmpty()) {
+            finish(task, "COMPLETED", null);
+            return task;
+        }
+        executor.execute(() -> purge(task, marked, categories));
+        log.info("批量删除已提交: {}, taskId: {}, 文档 {} 个, 跳过处理中 {} 个",
+                description, task.getTaskId(), task.getTotal(), task.getSkipped());
+        return task;
+    }
+
+    public PurgeTask getTask(String taskId) {
+        synchronized (tasks) {
+            return tasks.get(taskId);
+        }
+    }
+
+    /**
+     * 分类下已标记删除、向量可能尚未删除的文档ID
+     * 从数据库读取，其他节点提交的删除同样生效
+     */
+    public List<String> deletingIn(String category) {
+        return documentsRepository.findDeletingIds(category);
+    }
+
+    /**
+     * 给定文档中已标记删除、向量可能尚未删除的文档ID
+     */
+    public Set<String> deletingAmong(Collection<String> documentIds) {
+        return Set.copyOf(documentsRepository.findDeletingIds(documentIds));
+    }
+
+    /**
+     * 启动时继续删除进程退出前未删除完成的文档
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingPurges() {
+        List<Documents> pending = documentsRepository.findByStatus(DocumentStatus.DELETING);
+        if (!pending.isEmpty()) {
+            submit(pending, "恢复未完成的删除");
+        }
+    }
+
+    /**
+     * 分批标记为删除中，单条 update 的 in 列表与删除批次大小一致
+     *
+     * @return 实际标记的文档ID（提交后转为处理中的文档不会被标记）
+     */
+    private List<String> markDeleting(List<String> ids) {
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            documentsRepository.markDeleting(ids.subList(from, Math.min(ids.size(), from + batchSize)));
+        }
+        return documentsRepository.findByIds(ids).stream()
+                .filter(document -> document.getStatus() == DocumentStatus.DELETING)
+                .map(Documents::getId)
+                .toList();
+    }
+
+    private void purge(PurgeTask task, List<String> ids, Set<String> categories) {
+        task.status = "RUNNING";
+        FilterExpressionBuilder filterBuilder = new FilterExpressionBuilder();
+        try {
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                if (from > 0 && !batchInterval.isZero()) {
+                    Thread.sleep(batchInterval.toMillis());
+                }
+                List<String> batch = ids.subList(from, Math.min(ids.size(), from + batchSize));
+                // 被其他文档链接的片段先转给链接方，再按文档ID删除
+                chunkDeduplicator.removeDocuments(batch);
+                vectorStore.delete(filterBuilder.in("documentId", batch.toArray()).build());
+                documentChunksRepository.deleteByDocumentIds(batch);
+                removeCheckpoints(batch);
+                documentsRepository.deleteByIds(batch);
+                knowledgeGeneration.advance(categories);
+                task.deleted += batch.size();
+                log.debug("批量删除进度: taskId: {}, {}/{}", task.getTaskId(), task.getDeleted(), task.getTotal());
+            }
+            finish(task, "COMPLETED", null);
+            log.info("批量删除完成: {}, taskId: {}, 删除文档 {} 个", task.getDescription(), task.getTaskId(), task.getDeleted());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(task, "FAILED", "删除被中断，剩余文档将在重启后继续删除");
+        } catch (Exception e) {
+            // 未删除的文档保持删除中状态，重启后或再次提交时继续删除
+            log.error("批量删除失败: taskId: {}, 已删除 {}/{}", task.getTaskId(), task.getDeleted(), task.getTotal(), e);
+            finish(task, "FAILED", e.getMessage());
+        }
+    }
+
+    /**
+     * 删除断点记录及本节点上的转存文件
+     */
+    private void removeCheckpoints(Collection<String> documentIds) {
+        for (IngestCheckpoints checkpoint : ingestCheckpointsRepository.findByDocumentIds(documentIds)) {
+            if (!spoolStore.getNode().equals(checkpoint.getNode())) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(Path.of(checkpoint.getSpoolPath()));
+            } catch (IOException e) {
+                log.warn("转存文件删除失败: {}", checkpoint.getSpoolPath(), e);
+            }
+        }
+        ingestCheckpointsRepository.deleteByDocumentIds(documentIds);
+    }
+
+    private void finish(PurgeTask task, String status, String failReason) {
+        task.status = status;
+        task.failReason = failReason;
+        task.finishedAt = new Date();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("批量删除线程关闭超时");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ai.tx.knowledge.center.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向量化请求调度器
+ * 所有文档的向量写入批次共用同一组线程，并发数受线程数限制，请求速率受令牌桶限制，
+ * 保证整体不超过向量化服务的QPS配额；遇到限流错误时按指数退避重试
+ */
+@Slf4j
+@Component
+public class EmbeddingDispatcher {
+
+    @Value("${rag.embedding.max-concurrency:4}")
+    private int maxConcurrency;
+
+    @Value("${rag.embedding.max-qps:5}")
+    private double maxQps;
+
+    @Value("${rag.embedding.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${rag.embedding.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    private ThreadPoolExecutor executor;
+
+    private TokenBucket tokenBucket;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("embedding-"));
+        tokenBucket = new TokenBucket(maxQps);
+        log.info("向量化调度器初始化完成: maxConcurrency={}, maxQps={}", maxConcurrency, maxQps);
+    }
+
+    /**
+     * 提交一个向量化批次，在限速和并发限制下异步执行，限流失败时自动重试
+     */
+    public CompletableFuture<Void> dispatch(Runnable batch) {
+        return CompletableFuture.runAsync(() -> runWithRetry(batch), executor);
+    }
+
+    /**
+     * 单个文档同时在途的批次数上限，超过时应等待最早的批次完成
+     */
+    public int maxInFlight() {
+        return maxConcurrency * 2;
+    }
+
+    private void runWithRetry(Runnable batch) {
+        for (int attempt = 0; ; attempt++) {
+            tokenBucket.acquire();
+            try {
+                batch.run();
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxRetries || !isThrottled(e)) {
+                    throw e;
+                }
+                long backoff = retryBackoffMs * (1L << Math.min(attempt, 10));
+                backoff += ThreadLocalRandom.current().nextLong(retryBackoffMs + 1);
+                log.warn("向量化请求被限流，{} ms 后进行第 {} 次重试: {}", backoff, attempt + 1, e.getMessage());
+                sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * 是否为限流或临时性错误
+     */
+    private boolean isThrottled(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientAiException) {
+                return true;
+            }
+            String message = cause.getMessage();
+            if (message != null && (message.contains("429") || message.contains("Throttling")
+                    || message.toLowerCase().contains("rate limit"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("向量化请求等待被中断", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+            log.warn("向量化调度器关闭超时，剩余任务将被中断");
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 令牌桶，容量为一秒的配额，qps 不大于0时不限速
+     */
+    private static class TokenBucket {
+
+        private final double qps;
+
+        private double tokens;
+
+        private long lastRefill = System.nanoTime();
+
+        TokenBucket(double qps) {
+            this.qps = qps;
+            this.tokens = Math.max(qps, 1);
+        }
+
+        void acquire() {
+            if (qps <= 0) {
+                return;
+            }
+            while (true) {
+                long waitNanos;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    tokens = Math.min(Math.max(qps, 1), tokens + (now - lastRefill) * qps / 1_000_000_000d);
+                    lastRefill = now;
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    }
+                    waitNanos = (long) ((1 - tokens) / qps * 1_000_000_000d);
+                }
+                sleep(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+            }
+        }
+    }
+}
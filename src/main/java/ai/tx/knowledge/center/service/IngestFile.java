@@ -0,0 +1,61 @@
+package ai.tx.knowledge.center.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 待入库的文件，上传内容已转存到本地磁盘
+ * 持有转存文件的所有权，关闭时删除，可重复关闭
+ */
+@Slf4j
+@Getter
+@AllArgsConstructor
+public class IngestFile implements AutoCloseable {
+
+    /**
+     * 本地文件路径
+     */
+    private final Path path;
+
+    /**
+     * 原始文件名
+     */
+    private final String fileName;
+
+    /**
+     * 文件类型（扩展名，小写）
+     */
+    private final String fileType;
+
+    /**
+     * 文件大小（字节）
+     */
+    private final long fileSize;
+
+    /**
+     * 以内存映射方式读取文本内容
+     */
+    public Reader openReader(Charset charset) throws IOException {
+        return new MappedFileReader(path, charset);
+    }
+
+    /**
+     * 删除转存文件
+     */
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("临时文件删除失败: {}", path, e);
+        }
+    }
+
+}
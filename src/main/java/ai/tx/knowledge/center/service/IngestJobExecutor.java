@@ -0,0 +1,79 @@
+package ai.tx.knowledge.center.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档入库线程池
+ * 固定数量的工作线程 + 有界队列，队列满时拒绝新任务，避免上传洪峰拖垮服务
+ */
+@Slf4j
+@Component
+public class IngestJobExecutor {
+
+    @Value("${rag.ingest.worker-threads:2}")
+    private int workerThreads;
+
+    @Value("${rag.ingest.queue-capacity:50}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("ingest-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        // 阻塞提交直接写入队列，工作线程需提前启动
+        executor.prestartAllCoreThreads();
+        log.info("入库线程池初始化完成: workerThreads={}, queueCapacity={}", workerThreads, queueCapacity);
+    }
+
+    /**
+     * 提交入库任务
+     *
+     * @throws RejectedExecutionException 队列已满
+     */
+    public void submit(Runnable job) {
+        executor.execute(job);
+    }
+
+    /**
+     * 提交入库任务，队列已满时等待空位，用于批量导入时对解包速度施加背压
+     *
+     * @throws RejectedExecutionException 线程池已关闭
+     */
+    public void submitAndWait(Runnable job) throws InterruptedException {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("入库线程池已关闭");
+        }
+        executor.getQueue().put(job);
+    }
+
+    /**
+     * 当前排队中的任务数
+     */
+    public int queuedJobs() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+            log.warn("入库线程池关闭超时，剩余任务将被中断");
+            executor.shutdownNow();
+        }
+    }
+}
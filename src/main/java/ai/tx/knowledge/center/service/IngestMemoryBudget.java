@@ -0,0 +1,187 @@
+package ai.tx.knowledge.center.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 入库内存预算
+ * 每个入库任务在解析前按预估的堆内存占用从全局预算中预留，任务结束后归还；
+ * 预算不足时按提交顺序排队等待，避免多个大文件同时解析占满堆内存、影响同一进程中的问答请求。
+ *
+ * <p>单个任务的预估超过总预算时按总预算预留，即独占预算执行
+ *
+ * @author tanxiong
+ */
+@Slf4j
+@Component
+public class IngestMemoryBudget {
+
+    /**
+     * 入库可使用的堆内存，0表示最大堆内存的四分之一
+     */
+    @Value("${rag.ingest.memory-budget:0}")
+    private DataSize memoryBudget;
+
+    private long budget;
+
+    /**
+     * 已预留的字节数，由 this 保护
+     */
+    private long reserved = 0;
+
+    /**
+     * 等待预留的请求，按提交顺序满足
+     */
+    private final Deque<Object> waiters = new ArrayDeque<>();
+
+    private final Set<Reservation> active = new LinkedHashSet<>();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * 一次预留，关闭时归还，可重复关闭
+     */
+    @Getter
+    public class Reservation implements AutoCloseable {
+
+        private final String name;
+
+        private final long bytes;
+
+        private final Date reservedAt = new Date();
+
+        private boolean released = false;
+
+        private Reservation(String name, long bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        budget = memoryBudget.toBytes() > 0 ? memoryBudget.toBytes() : Runtime.getRuntime().maxMemory() / 4;
+        log.info("入库内存预算: {} MB", budget / 1024 / 1024);
+    }
+
+    /**
+     * 预留内存，预算不足时等待，超时未能预留返回 null
+     *
+     * @param name  任务名称，用于统计
+     * @param bytes 预估占用
+     */
+    public Reservation tryReserve(String name, long bytes, Duration timeout) throws InterruptedException {
+        Reservation reservation = acquire(name, bytes, TimeUnit.NANOSECONDS.convert(timeout));
+        if (reservation == null) {
+            rejected.incrementAndGet();
+            log.warn("入库内存预算不足: {}, 预估 {} MB, 已预留 {}/{} MB", name, bytes / 1024 / 1024,
+                    reserved / 1024 / 1024, budget / 1024 / 1024);
+        }
+        return reservation;
+    }
+
+    /**
+     * 预算充足且没有排队的请求时立即预留，否则返回 null，不计入拒绝数
+     */
+    public Reservation tryReserve(String name, long bytes) {
+        try {
+            return acquire(name, bytes, 0);
+        } catch (InterruptedException e) {
+            // 不等待时不会被中断
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 预留内存，预算不足时一直等待
+     */
+    public Reservation reserve(String name, long bytes) throws InterruptedException {
+        return acquire(name, bytes, -1);
+    }
+
+    /**
+     * 预算使用情况
+     */
+    public synchronized Map<String, Object> getStats() {
+        List<Map<String, Object>> reservations = new ArrayList<>();
+        for (Reservation reservation : active) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", reservation.getName());
+            item.put("bytes", reservation.getBytes());
+            item.put("reservedAt", reservation.getReservedAt());
+            reservations.add(item);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("budgetBytes", budget);
+        stats.put("reservedBytes", reserved);
+        stats.put("availableBytes", budget - reserved);
+        stats.put("waiting", waiters.size());
+        stats.put("rejected", rejected.get());
+        stats.put("reservations", reservations);
+        return stats;
+    }
+
+    /**
+     * @param timeoutNanos 等待时间，小于0表示一直等待
+     */
+    private synchronized Reservation acquire(String name, long bytes, long timeoutNanos) throws InterruptedException {
+        long cost = Math.min(Math.max(bytes, 0), budget);
+        Object waiter = new Object();
+        waiters.addLast(waiter);
+        try {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (waiters.peekFirst() != waiter || reserved + cost > budget) {
+                if (timeoutNanos < 0) {
+                    wait();
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            reserved += cost;
+            Reservation reservation = new Reservation(name, cost);
+            active.add(reservation);
+            return reservation;
+        } finally {
+            waiters.remove(waiter);
+            // 队首变化，后面的请求可能已经可以预留
+            notifyAll();
+        }
+    }
+
+    private synchronized void release(Reservation reservation) {
+        if (reservation.released) {
+            return;
+        }
+        reservation.released = true;
+        reserved -= reservation.bytes;
+        active.remove(reservation);
+        notifyAll();
+    }
+}
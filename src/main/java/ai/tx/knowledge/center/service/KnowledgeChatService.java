@@ -2,13 +2,16 @@ package ai.tx.knowledge.center.service;
 
 import ai.tx.knowledge.center.entity.Conversations;
 import ai.tx.knowledge.center.entity.Documents;
+import ai.tx.knowledge.center.enums.DocumentStatus;
 import ai.tx.knowledge.center.enums.ConversationsStatus;
 import ai.tx.knowledge.center.repository.ConversationsRepository;
 import ai.tx.knowledge.center.repository.DocumentsRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.Filter;
@@ -20,8 +23,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import static org.springframework.ai.chat.client.advisor.vectorstore.VectorStoreChatMemoryAdvisor.TOP_K;
@@ -50,17 +55,22 @@ public class KnowledgeChatService {
     @Autowired
     private ConversationsRepository conversationsRepository;
 
+    @Autowired
+    private SemanticAnswerCache semanticAnswerCache;
+
+    @Autowired
+    private CategoryBackfill categoryBackfill;
+
+    @Autowired
+    private DocumentPurger documentPurger;
+
     /**
      * 聊天对话
      */
     @Transactional(rollbackFor = Exception.class)
     public Flux<String> chat(String conversationId, String userMessage, String category) {
 
-        List<Documents> documents = documentsRepository.findByCategory(category);
-        List<String> documentIds = documents.stream().map(Documents::getId).toList();
-
-        FilterExpressionBuilder filterBuilder = new FilterExpressionBuilder();
-        Filter.Expression documentId = filterBuilder.in("documentId", documentIds.toArray()).build();
+        Filter.Expression categoryFilter = retrievalFilter(category);
 
         // 查询会话是否存在
         Conversations conversations = conversationsRepository.findByConversationId(conversationId);
@@ -79,6 +89,17 @@ public class KnowledgeChatService {
         // 历史消息列表
         List<Message> historyMessage = chatMemory.get(conversationId);
 
+        // 首轮问题先查语义缓存，命中时回放缓存的回答并照常记入会话
+        SemanticAnswerCache.Probe probe = historyMessage.isEmpty() ? semanticAnswerCache.probe(category, userMessage) : null;
+        if (probe != null && probe.isHit()) {
+            log.info("问答语义缓存命中，回放缓存的回答: {}", conversationId);
+            chatMemory.add(conversationId, List.of(new UserMessage(userMessage), new AssistantMessage(probe.getAnswer())));
+            conversationsRepository.save(conversations);
+            return probe.replay()
+                    .doOnComplete(() -> chatMemory.forceSync(conversationId));
+        }
+        List<String> fragments = new ArrayList<>();
+
         // 发起聊天请求并处理响应
         Flux<String> chat = chatClient.prompt()
                 .messages(historyMessage)
@@ -86,11 +107,18 @@ public class KnowledgeChatService {
                 .advisors(a -> a.param(CONVERSATION_ID, conversationId).param(TOP_K, 100))
                 .advisors(QuestionAnswerAdvisor
                         .builder(vectorStore)
-                        .searchRequest(SearchRequest.builder().filterExpression(documentId).build())
+                        .searchRequest(SearchRequest.builder().filterExpression(categoryFilter).build())
                         .build())
                 .stream()
                 .content()
+                .doOnNext(fragment -> {
+                    if (probe != null) {
+                        fragments.add(fragment);
+                    }
+                })
                 .doOnComplete(() -> {
+                    // 完整生成的回答才写入语义缓存，出错或中途断开的不写入
+                    semanticAnswerCache.store(probe, fragments);
                     // 7. 聊天完成后，强制同步到持久化存储
                     log.info("聊天完成，强制同步会话: {}", conversationId);
                     chatMemory.forceSync(conversationId);
@@ -104,6 +132,32 @@ public class KnowledgeChatService {
         return chat;
     }
 
+    /**
+     * 检索范围：分类下的全部文档，删除中的文档向量可能尚未删除，不参与检索
+     * 向量已全部记录分类时按分类过滤，只排除正在删除的少量文档；补写完成前按分类下的文档ID过滤
+     */
+    private Filter.Expression retrievalFilter(String category) {
+        FilterExpressionBuilder filterBuilder = new FilterExpressionBuilder();
+        if (categoryBackfill.isCompleted()) {
+            List<String> deleting = documentPurger.deletingIn(category);
+            FilterExpressionBuilder.Op inCategory = filterBuilder.eq("category", category);
+            return deleting.isEmpty() ? inCategory.build()
+                    : filterBuilder.and(inCategory, filterBuilder.nin("documentId", deleting.toArray())).build();
+        }
+        List<String> documentIds = documentsRepository.findByCategory(category).stream()
+                .filter(document -> document.getStatus() != DocumentStatus.DELETING)
+                .map(Documents::getId)
+                .toList();
+        return filterBuilder.in("documentId", documentIds.toArray()).build();
+    }
+
+    /**
+     * 问答语义缓存统计
+     */
+    public Map<String, Object> getAnswerCacheStats() {
+        return semanticAnswerCache.getStats();
+    }
+
     /**
      * 获取聊天历史
      */
@@ -1,34 +1,79 @@
 package ai.tx.knowledge.center.service;
 
+import ai.tx.knowledge.center.common.HashUtils;
+import ai.tx.knowledge.center.common.IngestRejectedException;
+import ai.tx.knowledge.center.entity.DocumentChunks;
 import ai.tx.knowledge.center.entity.Documents;
+import ai.tx.knowledge.center.entity.IngestCheckpoints;
+import ai.tx.knowledge.center.enums.DocumentStatus;
+import ai.tx.knowledge.center.repository.DocumentChunksRepository;
 import ai.tx.knowledge.center.repository.DocumentsRepository;
+import ai.tx.knowledge.center.repository.IngestCheckpointsRepository;
+import ai.tx.knowledge.center.service.chunking.ChunkFeatureExtractor;
+import ai.tx.knowledge.center.service.chunking.ChunkPlanner;
+import ai.tx.knowledge.center.service.chunking.ChunkSizer;
+import ai.tx.knowledge.center.service.chunking.ChunkingContentHandler;
+import ai.tx.knowledge.center.service.chunking.SentenceBuffer;
+import ai.tx.knowledge.center.service.chunking.SentenceSegmenter;
+import ai.tx.knowledge.center.service.chunking.StreamingChunker;
+import ai.tx.knowledge.center.service.chunking.TextNormalizer;
+import ai.tx.knowledge.center.service.embedding.CachingEmbeddingModel;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.document.DocumentReader;
-import org.springframework.ai.reader.TextReader;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.Filter;
 import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.SAXException;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Value;
 
 /**j
@@ -44,6 +89,42 @@ public class KnowledgeFileService {
     @Autowired
     private DocumentsRepository documentsRepository;
 
+    @Autowired
+    private DocumentChunksRepository documentChunksRepository;
+
+    @Autowired
+    private IngestJobExecutor ingestJobExecutor;
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private EmbeddingDispatcher embeddingDispatcher;
+
+    @Autowired
+    private PdfPageReader pdfPageReader;
+
+    @Autowired
+    private SpoolStore spoolStore;
+
+    @Autowired
+    private IngestCheckpointsRepository ingestCheckpointsRepository;
+
+    @Autowired
+    private DocumentPurger documentPurger;
+
+    @Autowired
+    private IngestMemoryBudget ingestMemoryBudget;
+
+    @Autowired
+    private ChunkDeduplicator chunkDeduplicator;
+
+    @Autowired
+    private KnowledgeGeneration knowledgeGeneration;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
     @Value("${rag.chunking.target-size:800}")
     private int targetChunkSize;
 
@@ -59,12 +140,96 @@ public class KnowledgeFileService {
     @Value("${rag.chunking.sentence-boundary-mode:strict}")
     private String sentenceBoundaryMode;
 
+    /**
+     * chunk大小的计量单位：chars(字符)/tokens(token)，target-size、max-size、min-size、overlap-size 均按该单位计算
+     */
+    @Value("${rag.chunking.size-unit:chars}")
+    private String sizeUnit;
+
+    /**
+     * 按token计量时使用的分词编码
+     */
+    @Value("${rag.chunking.tokenizer-encoding:cl100k_base}")
+    private String tokenizerEncoding;
+
+    private ChunkSizer chunkSizer;
+
     @Value("${rag.chunking.enable-content-hash:true}")
     private boolean enableContentHash;
 
     @Value("${rag.chunking.preserve-structure:true}")
     private boolean preserveStructure;
 
+    /**
+     * 追加的停用词，用于计算语义密度
+     */
+    @Value("${rag.chunking.extra-stop-words:}")
+    private List<String> extraStopWords;
+
+    private ChunkFeatureExtractor featureExtractor;
+
+    /**
+     * PDF是否按页并行解析、切分，关闭时使用Tika流式解析
+     */
+    @Value("${rag.pdf.parallel:true}")
+    private boolean pdfParallel;
+
+    /**
+     * 超过该大小的PDF不按页并行，改为流式解析
+     */
+    @Value("${rag.pdf.parallel-max-size:50MB}")
+    private DataSize pdfParallelMaxSize;
+
+    /**
+     * 上传文件大小上限，需同时调整 spring.servlet.multipart 的限制
+     */
+    @Value("${rag.ingest.max-file-size:10MB}")
+    private DataSize maxFileSize;
+
+    /**
+     * 单个文档最多自动执行的入库次数
+     */
+    @Value("${rag.ingest.max-attempts:3}")
+    private int ingestMaxAttempts;
+
+    /**
+     * 自动重试的间隔，按已执行次数线性增长
+     */
+    @Value("${rag.ingest.retry-delay:30s}")
+    private Duration ingestRetryDelay;
+
+    /**
+     * 上传请求等待内存预算的最长时间，超时返回429
+     */
+    @Value("${rag.ingest.memory-wait:10s}")
+    private Duration memoryWait;
+
+    /**
+     * 按页并行解析的PDF，堆内存占用按文件大小的倍数估算（页面文本、片段及元数据）
+     */
+    @Value("${rag.ingest.pdf-memory-factor:20}")
+    private int pdfMemoryFactor;
+
+    /**
+     * 流式解析的堆内存占用，与文件大小无关（解析缓冲、切分窗口和在途的写入批次）
+     */
+    @Value("${rag.ingest.streaming-memory:32MB}")
+    private DataSize streamingMemory;
+
+    /**
+     * 单个压缩包最多包含的文件数
+     */
+    @Value("${rag.ingest.archive-max-entries:10000}")
+    private int archiveMaxEntries;
+
+    /**
+     * 压缩包中未标记为UTF-8的文件名编码，Windows下生成的zip通常为GBK
+     */
+    @Value("${rag.ingest.archive-name-encoding:UTF-8}")
+    private String archiveNameEncoding;
+
+    private final Parser tikaParser = new AutoDetectParser();
+
     /**
      * 支持的文件类型
      */
@@ -75,90 +240,646 @@ public class KnowledgeFileService {
 
     private static final int batchSize = 25;
 
+    private static final int SEARCH_TOP_K = 10;
+
+    private static final double SEARCH_SIMILARITY_THRESHOLD = 0.50;
 
     /**
-     * 处理上传的文档
+     * 重试、续传的任务未能预留内存时，重新提交的间隔（毫秒）
      */
-    @Transactional(rollbackFor = Exception.class)
-    public List<Document> processDocument(MultipartFile file, Documents document) {
+    private static final long MEMORY_RETRY_DELAY = 1000;
+
+    /**
+     * PDF按页切分时页面之间的分隔，计入片段偏移量
+     */
+    private static final String PAGE_SEPARATOR = "\n\n";
+
+    @PostConstruct
+    public void init() {
+        featureExtractor = new ChunkFeatureExtractor(extraStopWords);
+        chunkSizer = ChunkSizer.create(sizeUnit, tokenizerEncoding);
+        // 提前加载词表，避免首个入库任务承担加载耗时
+        chunkSizer.measure("chunk", 0, 5);
+    }
+
+
+    /**
+     * 提交上传的文档
+     * 文件转存到本地后立即返回文档ID，解析、切分、向量化由入库线程池异步完成
+     */
+    public String submitDocument(MultipartFile file, Documents document) throws Exception {
+        // 1. 文件验证
+        String fileName = file.getOriginalFilename();
+        String fileType = validateFile(fileName, file.getSize());
+
+        // 2. 同名文档沿用原文档ID
+        reuseExistingId(document, fileName);
+
+        // 3. 请求结束后容器会清理上传文件，先转存到本地磁盘
+        IngestFile ingestFile = spoolUpload(file, fileName, fileType);
+
+        // 4. 提交入库任务
+        enqueue(ingestFile, document, false);
+
+        log.info("文档已提交入库: {}, documentId: {}", fileName, document.getId());
+        return document.getId();
+    }
+
+    /**
+     * 用新版本替换已有文档
+     * 新版本切分后按内容哈希与现有片段比对，只向量化新增的片段、删除不再出现的片段；
+     * 处理期间旧版本仍可检索，全部写入后在一次更新中切换文档名称和版本号
+     *
+     * @return 文档ID，新的名称和版本号在入库完成后通过 /knowledge/status 查询
+     */
+    public String replaceDocument(String id, MultipartFile file) throws Exception {
+        Documents document = documentsRepository.findById(id);
+        if (document == null) {
+            throw new Exception("文档不存在");
+        }
+        if (document.getStatus() == DocumentStatus.PROCESSING) {
+            throw new Exception("文档正在处理中，请稍后重试");
+        }
+        if (document.getStatus() == DocumentStatus.DELETING) {
+            throw new Exception("文档正在删除中");
+        }
+
+        String fileName = file.getOriginalFilename();
+        String fileType = validateFile(fileName, file.getSize());
+        Documents sameName = documentsRepository.findByCategoryAndDocumentName(document.getCategory(), fileName);
+        if (sameName != null && !sameName.getId().equals(id)) {
+            throw new Exception("同一分类下已存在同名文档: " + fileName);
+        }
+
+        IngestFile ingestFile = spoolUpload(file, fileName, fileType);
+        enqueue(ingestFile, document, false);
+
+        log.info("文档新版本已提交入库: {}, documentId: {}, 当前版本: {}", fileName, id, document.getVersion());
+        return document.getId();
+    }
+
+    /**
+     * 将上传文件转存到本地磁盘
+     */
+    private IngestFile spoolUpload(MultipartFile file, String fileName, String fileType) throws IOException {
+        Path spoolFile = spoolStore.create(fileType);
+        try {
+            file.transferTo(spoolFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+        return new IngestFile(spoolFile, fileName, fileType, file.getSize());
+    }
+
+    /**
+     * 批量提交压缩包中的文档
+     * 边读取边解包，每个条目转存后立即提交入库任务，后续条目的解包与前面条目的解析、向量化并行进行；
+     * 入库队列已满时等待空位，而不是拒绝
+     *
+     * @param input    zip / tar / tar.gz 压缩包数据流
+     * @param category 所有条目所属的分类
+     * @return 每个条目的处理结果
+     */
+    public List<Map<String, Object>> submitArchive(InputStream input, String category) throws Exception {
+        List<Map<String, Object>> manifest = new ArrayList<>();
+        try (ArchiveInputStream<? extends ArchiveEntry> archive = openArchive(input)) {
+            ArchiveEntry entry;
+            while ((entry = archive.getNextEntry()) != null) {
+                if (entry.isDirectory() || isHiddenEntry(entry.getName())) {
+                    continue;
+                }
+                if (manifest.size() >= archiveMaxEntries) {
+                    throw new Exception("压缩包文件数不能超过" + archiveMaxEntries);
+                }
+                manifest.add(submitArchiveEntry(archive, entry, category));
+            }
+        }
+
+        long submitted = manifest.stream().filter(item -> item.get("documentId") != null).count();
+        log.info("压缩包解包完成: 分类 {}, 共 {} 个文件, 提交入库 {} 个", category, manifest.size(), submitted);
+        return manifest;
+    }
+
+    /**
+     * 转存并提交压缩包中的单个条目，失败只影响该条目
+     */
+    private Map<String, Object> submitArchiveEntry(ArchiveInputStream<? extends ArchiveEntry> archive,
+                                                   ArchiveEntry entry, String category) throws InterruptedException {
+        String fileName = entry.getName();
+        Map<String, Object> item = new HashMap<>();
+        item.put("fileName", fileName);
+
         try {
-            // 1. 文件验证
-            String fileName = file.getOriginalFilename();
-            if (fileName == null || fileName.trim().isEmpty()) {
-                return null;
+            long declaredSize = entry.getSize() == ArchiveEntry.SIZE_UNKNOWN ? 0 : entry.getSize();
+            String fileType = validateFile(fileName, declaredSize);
+
+            Documents document = new Documents();
+            document.genId();
+            document.setCategory(category);
+            reuseExistingId(document, fileName);
+
+            // 条目大小可能未知，边复制边检查
+            IngestFile ingestFile = spoolStore.spool(archive, fileName, fileType, maxFileSize.toBytes());
+            if (ingestFile == null) {
+                throw new Exception("文件大小不能超过" + maxFileSize.toMegabytes() + "MB");
             }
+            item.put("fileSize", ingestFile.getFileSize());
 
-            String fileType = getFileExtension(fileName).toLowerCase();
-            if (!SUPPORTED_TYPES.containsKey(fileType)) {
-                throw new Exception("不支持的文件类型: " + fileType + "，支持的类型：" + SUPPORTED_TYPES.keySet());
+            enqueue(ingestFile, document, true);
+
+            item.put("documentId", document.getId());
+            item.put("status", document.getStatus());
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("压缩包条目提交失败: {}, {}", fileName, e.getMessage());
+            item.put("status", DocumentStatus.FAILED);
+            item.put("failReason", e.getMessage());
+        }
+        return item;
+    }
+
+    /**
+     * 提交本地文件（目录同步），文件复制到转存目录后入库，入库队列已满时等待
+     *
+     * @param documentId 同步清单中记录的文档ID，文档仍存在时作为新版本替换；
+     *                   为 null 或文档已删除时新建，同一分类下的同名文档沿用原文档ID
+     * @return 文档ID
+     */
+    public String submitLocalFile(Path file, String category, String documentId) throws Exception {
+        String fileName = file.getFileName().toString();
+        String fileType = validateFile(fileName, Files.size(file));
+
+        Documents document = documentId != null ? documentsRepository.findById(documentId) : null;
+        if (document != null) {
+            if (document.getStatus() == DocumentStatus.PROCESSING) {
+                throw new Exception("文档正在处理中，请稍后重试");
+            }
+            if (document.getStatus() == DocumentStatus.DELETING) {
+                throw new Exception("文档正在删除中");
             }
+        } else {
+            document = new Documents();
+            document.genId();
+            document.setCategory(category);
+            reuseExistingId(document, fileName);
+        }
+
+        IngestFile ingestFile;
+        try (InputStream input = Files.newInputStream(file)) {
+            ingestFile = spoolStore.spool(input, fileName, fileType, maxFileSize.toBytes());
+        }
+        if (ingestFile == null) {
+            throw new Exception("文件大小不能超过" + maxFileSize.toMegabytes() + "MB");
+        }
+        enqueue(ingestFile, document, true);
+
+        log.info("同步文件已提交入库: {}, documentId: {}", file, document.getId());
+        return document.getId();
+    }
+
+    /**
+     * 校验文件名、类型和大小
+     *
+     * @return 文件类型（扩展名，小写）
+     */
+    private String validateFile(String fileName, long fileSize) throws Exception {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            throw new Exception("文件名不能为空");
+        }
 
-            // 2. 文件大小检查
-            if (file.getSize() > 10 * 1024 * 1024) { // 10MB限制
-                throw new Exception("文件大小不能超过10MB");
+        String fileType = getFileExtension(fileName).toLowerCase();
+        if (!SUPPORTED_TYPES.containsKey(fileType)) {
+            throw new Exception("不支持的文件类型: " + fileType + "，支持的类型：" + SUPPORTED_TYPES.keySet());
+        }
+
+        if (fileSize > maxFileSize.toBytes()) {
+            throw new Exception("文件大小不能超过" + maxFileSize.toMegabytes() + "MB");
+        }
+        return fileType;
+    }
+
+    /**
+     * 同一分类下的同名文档视为重新上传，沿用原文档ID，以便复用内容未变化的片段
+     */
+    private void reuseExistingId(Documents document, String fileName) throws Exception {
+        Documents existing = documentsRepository.findByCategoryAndDocumentName(document.getCategory(), fileName);
+        if (existing != null) {
+            if (existing.getStatus() == DocumentStatus.PROCESSING) {
+                throw new Exception("文档正在处理中，请稍后重试");
             }
+            if (existing.getStatus() == DocumentStatus.DELETING) {
+                throw new Exception("同名文档正在删除中，请稍后重试");
+            }
+            document.setId(existing.getId());
+            document.setVersion(existing.getVersion());
+        }
+    }
 
-            log.info("开始处理文档: {}, 类型: {}, 大小: {} bytes", fileName, fileType, file.getSize());
+    /**
+     * 保存文档记录并提交入库任务
+     *
+     * @param wait 入库队列已满时是否等待，否则直接拒绝
+     */
+    private void enqueue(IngestFile ingestFile, Documents document, boolean wait) throws Exception {
+        // 排队前预留内存，任务结束时归还；预算不足时上传请求等待一段时间后拒绝，批量导入一直等待
+        IngestMemoryBudget.Reservation reservation;
+        try {
+            String name = document.getId() + "/" + ingestFile.getFileName();
+            long cost = estimateHeapCost(ingestFile);
+            reservation = wait ? ingestMemoryBudget.reserve(name, cost)
+                    : ingestMemoryBudget.tryReserve(name, cost, memoryWait);
+        } catch (InterruptedException e) {
+            ingestFile.close();
+            throw e;
+        }
+        if (reservation == null) {
+            ingestFile.close();
+            throw new IngestRejectedException("入库任务过多，请稍后重试");
+        }
+
+        // 调用方检查状态后可能等待了内存预算，期间同一文档的其他入库或删除可能已开始，已有文档以条件更新标记为处理中
+        Documents claimed = documentsRepository.markProcessing(document.getId())
+                ? documentsRepository.findById(document.getId()) : null;
+        if (claimed == null && documentsRepository.findById(document.getId()) != null) {
+            reservation.close();
+            ingestFile.close();
+            throw new Exception("文档正在处理中或删除中，请稍后重试");
+        }
 
-            // 3. 根据文件类型处理
-            List<Document> documents = processDocumentByType(file, fileType);
+        boolean submitted = false;
+        try {
 
-            if (documents == null || documents.isEmpty()) {
-                throw new Exception("文档处理后无有效内容");
+            if (claimed != null) {
+                // 等待期间其他入库可能已完成，名称和版本号以标记后读取的为准；名称在新版本入库成功后才切换
+                document.setDocumentName(claimed.getDocumentName());
+                document.setVersion(claimed.getVersion());
+                document.setStatus(DocumentStatus.PROCESSING);
+                document.setFailReason(null);
+            } else {
+                document.setDocumentName(ingestFile.getFileName());
+                document.setVersion(0);
+                document.setStatus(DocumentStatus.PROCESSING);
+                documentsRepository.save(document);
             }
+            saveCheckpoint(ingestFile, document);
 
-            // 4. 为文档添加元数据
-            documents.forEach(doc -> {
-                doc.getMetadata().put("documentId", document.getId());
-                doc.getMetadata().put("source", fileName);
-                doc.getMetadata().put("fileType", fileType);
-                doc.getMetadata().put("fileSize", String.valueOf(file.getSize()));
-                doc.getMetadata().put("uploadTime", String.valueOf(System.currentTimeMillis()));
-            });
+            IngestMemoryBudget.Reservation admitted = reservation;
+            Runnable job = () -> processDocument(ingestFile, document, admitted);
+            try {
+                if (wait) {
+                    ingestJobExecutor.submitAndWait(job);
+                } else {
+                    ingestJobExecutor.submit(job);
+                }
+                submitted = true;
+            } catch (RejectedExecutionException e) {
+                markFailed(document, "入库队列已满");
+                throw new IngestRejectedException("入库任务过多，请稍后重试");
+            } catch (InterruptedException e) {
+                markFailed(document, "导入被中断");
+                throw e;
+            }
+        } finally {
+            // 未能提交时由这里删除转存文件，提交后由入库任务负责
+            if (!submitted) {
+                reservation.close();
+                ingestCheckpointsRepository.deleteByDocumentId(document.getId());
+                ingestFile.close();
+            }
+        }
+    }
 
-            document.setDocumentName(fileName);
+    /**
+     * 记录入库断点；重新上传时替换原断点，原断点的转存文件不再需要
+     */
+    private void saveCheckpoint(IngestFile ingestFile, Documents document) throws IOException {
+        IngestCheckpoints previous = ingestCheckpointsRepository.findByDocumentId(document.getId());
+        if (previous != null && spoolStore.getNode().equals(previous.getNode())
+                && !ingestFile.getPath().toString().equals(previous.getSpoolPath())) {
+            Files.deleteIfExists(Path.of(previous.getSpoolPath()));
+        }
 
-            log.info("文档处理完成: {}, 生成片段数: {}", fileName, documents.size());
+        IngestCheckpoints checkpoint = new IngestCheckpoints();
+        checkpoint.setDocumentId(document.getId());
+        checkpoint.setNode(spoolStore.getNode());
+        checkpoint.setSpoolPath(ingestFile.getPath().toString());
+        checkpoint.setFileName(ingestFile.getFileName());
+        checkpoint.setFileType(ingestFile.getFileType());
+        checkpoint.setFileSize(ingestFile.getFileSize());
+        checkpoint.setAttempts(0);
+        checkpoint.setChunksWritten(0);
+        checkpoint.setBatchesWritten(0);
+        checkpoint.setUpdatedAt(new Date());
+        ingestCheckpointsRepository.save(checkpoint);
+    }
 
-            // 3. 切分文档（如果单个文档太大）
-            List<Document> splitDocuments = splitDocuments(documents);
+    /**
+     * 打开压缩包，支持 zip、tar 以及 gzip 压缩的 tar
+     */
+    private ArchiveInputStream<? extends ArchiveEntry> openArchive(InputStream input) throws Exception {
+        InputStream buffered = new BufferedInputStream(input);
+        try {
+            String compressor = CompressorStreamFactory.detect(buffered);
+            if (!CompressorStreamFactory.GZIP.equals(compressor)) {
+                throw new Exception("不支持的压缩格式: " + compressor);
+            }
+            buffered = new BufferedInputStream(new GzipCompressorInputStream(buffered, true));
+        } catch (CompressorException e) {
+            // 未经压缩
+        }
 
-            log.info("文档切分完成，共 {} 个文档片段", splitDocuments.size());
+        String format;
+        try {
+            format = ArchiveStreamFactory.detect(buffered);
+        } catch (ArchiveException e) {
+            throw new Exception("无法识别的压缩包格式，支持 zip、tar、tar.gz");
+        }
+        return switch (format) {
+            case ArchiveStreamFactory.ZIP -> new ZipArchiveInputStream(buffered, archiveNameEncoding, true, true);
+            case ArchiveStreamFactory.TAR -> new TarArchiveInputStream(buffered, archiveNameEncoding);
+            default -> throw new Exception("不支持的压缩包格式: " + format + "，支持 zip、tar、tar.gz");
+        };
+    }
 
-            // 4. 存储到向量数据库
-            IntStream.range(0, (splitDocuments.size() + batchSize - 1) / batchSize)
-//                    .parallel() //使用并行，会超过服务端允许每秒请求数。
-                    .forEach(i -> {
-                        int start = i * batchSize;
-                        int end = Math.min(start + batchSize, splitDocuments.size());
-                        List<Document> batch = splitDocuments.subList(start, end);
-                        vectorStore.add(batch);
-                        log.info("线程 {} 已存储第 {} - {} 个文档片段", Thread.currentThread().getName(), start + 1, end);
-                    });
+    /**
+     * 跳过 macOS 等系统生成的隐藏文件
+     */
+    private boolean isHiddenEntry(String name) {
+        String baseName = name.substring(name.lastIndexOf('/') + 1);
+        return name.startsWith("__MACOSX/") || baseName.startsWith(".");
+    }
 
-            log.info("知识文件上传成功: {}, 共处理 {} 个文档片段",
-                    file.getOriginalFilename(), splitDocuments.size());
+    /**
+     * 处理文档：解析 → 切分 → 向量化 → 存储，在入库线程池中执行
+     * 每个批次写入后记录断点；失败时保留转存文件，按退避时间自动重试，重试时已写入的片段直接复用
+     */
+    public void processDocument(IngestFile ingestFile, Documents document) {
+        processDocument(ingestFile, document, null);
+    }
 
-            documentsRepository.save(document);
+    /**
+     * @param reservation 提交时已预留的内存，为 null 时（重试、续传）在解析前预留；
+     *                    预算不足时不占用工作线程等待（已预留的任务可能排在后面），稍后重新提交
+     */
+    private void processDocument(IngestFile ingestFile, Documents document, IngestMemoryBudget.Reservation reservation) {
+        String fileName = ingestFile.getFileName();
+        String fileType = ingestFile.getFileType();
+        boolean keepSpool = false;
+        boolean started = false;
+        try {
+            if (reservation == null) {
+                reservation = ingestMemoryBudget.tryReserve(document.getId() + "/" + fileName, estimateHeapCost(ingestFile));
+                if (reservation == null) {
+                    keepSpool = true;
+                    resubmit(ingestFile, document, MEMORY_RETRY_DELAY);
+                    return;
+                }
+            }
+            started = true;
+            log.info("开始处理文档: {}, 类型: {}, 大小: {} bytes", fileName, fileType, ingestFile.getFileSize());
+            ingestCheckpointsRepository.startAttempt(document.getId());
+
+            // 1. 文档公共元数据
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("documentId", document.getId());
+            // 问答按分类过滤向量，不需要先查出分类下的全部文档ID
+            metadata.put("category", document.getCategory());
+            metadata.put("source", fileName);
+            metadata.put("fileType", fileType);
+            metadata.put("fileSize", String.valueOf(ingestFile.getFileSize()));
+            metadata.put("uploadTime", String.valueOf(System.currentTimeMillis()));
+
+            // 2. 根据文件类型解析、切分，切分出的片段分批存储到向量数据库
+            ChunkBatchWriter writer = new ChunkBatchWriter(document);
+            try {
+                processDocumentByType(ingestFile, metadata, writer);
+                writer.finish();
+            } catch (Exception e) {
+                writer.abort();
+                throw e;
+            }
+
+            if (writer.getStored() + writer.getReused() + writer.getLinked() == 0) {
+                // 重试也不会有结果，不保留断点
+                log.warn("文档处理后无有效内容: {}", fileName);
+                markFailed(document, "文档处理后无有效内容");
+                ingestCheckpointsRepository.deleteByDocumentId(document.getId());
+                return;
+            }
 
-            return documents;
+            // 新版本的片段已全部写入、旧片段已删除，一次更新切换名称、版本和状态
+            int version = document.getVersion() != null ? document.getVersion() + 1 : 1;
+            log.info("知识文件上传成功: {}, 版本 {}, 新增 {} 个文档片段, 复用 {} 个, 近似重复 {} 个, 删除 {} 个",
+                    fileName, version, writer.getStored(), writer.getReused(), writer.getLinked(), writer.getRemoved());
+
+            document.setDocumentName(fileName);
+            document.setVersion(version);
+            document.setStatus(DocumentStatus.COMPLETED);
+            document.setFailReason(null);
+            documentsRepository.save(document);
+            ingestCheckpointsRepository.deleteByDocumentId(document.getId());
 
         } catch (Exception e) {
-            log.error("文档处理失败", e);
+            log.error("文档处理失败: {}", fileName, e);
+            keepSpool = retryOrFail(ingestFile, document, e.getMessage());
+        } finally {
+            if (started) {
+                // 无论成功与否，可能已写入或删除了片段
+                knowledgeGeneration.advance(document.getCategory());
+            }
+            if (reservation != null) {
+                reservation.close();
+            }
+            if (!keepSpool) {
+                ingestFile.close();
+            }
+        }
+    }
+
+    /**
+     * 估算入库过程中的堆内存占用：按页并行解析的PDF需保留全部页面文本，与文件大小成正比，其余为流式解析
+     */
+    private long estimateHeapCost(IngestFile ingestFile) {
+        long cost = streamingMemory.toBytes();
+        if ("pdf".equals(ingestFile.getFileType()) && usePdfPageReader(ingestFile)) {
+            cost += ingestFile.getFileSize() * pdfMemoryFactor;
+        }
+        return cost;
+    }
+
+    /**
+     * 入库失败后的处理：未超过最大执行次数时延迟重新提交，否则标记失败并保留断点，可手动续传
+     *
+     * @return 是否保留转存文件
+     */
+    private boolean retryOrFail(IngestFile ingestFile, Documents document, String reason) {
+        IngestCheckpoints checkpoint;
+        try {
+            checkpoint = ingestCheckpointsRepository.findByDocumentId(document.getId());
+        } catch (RuntimeException e) {
+            log.warn("入库断点读取失败: {}", document.getId(), e);
+            checkpoint = null;
+        }
+        if (checkpoint == null) {
+            markFailed(document, reason);
+            return false;
+        }
+
+        int attempts = checkpoint.getAttempts() != null ? checkpoint.getAttempts() : 0;
+        if (attempts >= ingestMaxAttempts) {
+            markFailed(document, reason + "（已执行" + attempts + "次，可通过 /knowledge/resume 继续入库）");
+            return true;
+        }
+
+        long delay = ingestRetryDelay.toMillis() * attempts;
+        log.info("文档 {} 将在 {} ms 后进行第 {} 次入库, 已写入 {} 个片段", document.getId(), delay,
+                attempts + 1, checkpoint.getChunksWritten());
+        document.setFailReason(reason);
+        documentsRepository.save(document);
+        resubmit(ingestFile, document, delay);
+        return true;
+    }
+
+    /**
+     * 延迟重新提交入库任务
+     */
+    private void resubmit(IngestFile ingestFile, Documents document, long delayMillis) {
+        Executor delayed = CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS);
+        delayed.execute(() -> {
+            try {
+                ingestJobExecutor.submit(() -> processDocument(ingestFile, document));
+            } catch (RejectedExecutionException e) {
+                markFailed(document, "入库队列已满，可通过 /knowledge/resume 继续入库");
+            }
+        });
+    }
+
+    /**
+     * 手动续传失败的入库任务，从第一个未写入的批次继续，已写入的片段不再向量化
+     */
+    public void resumeDocument(String id) throws Exception {
+        Documents document = documentsRepository.findById(id);
+        if (document == null) {
+            throw new Exception("文档不存在");
+        }
+        if (document.getStatus() != DocumentStatus.FAILED) {
+            throw new Exception("只有处理失败的文档可以续传");
+        }
+        IngestFile ingestFile = checkpointFile(ingestCheckpointsRepository.findByDocumentId(id));
+        if (ingestFile == null) {
+            throw new Exception("没有可续传的入库任务，请重新上传");
+        }
+
+        // 同时提交的续传、替换或删除只有一个能标记成功
+        if (!documentsRepository.markProcessing(id)) {
+            throw new Exception("文档正在处理中或删除中，请稍后重试");
+        }
+        document.setStatus(DocumentStatus.PROCESSING);
+        document.setFailReason(null);
+        try {
+            ingestJobExecutor.submit(() -> processDocument(ingestFile, document));
+        } catch (RejectedExecutionException e) {
+            markFailed(document, "入库队列已满，可通过 /knowledge/resume 继续入库");
+            throw new IngestRejectedException("入库任务过多，请稍后重试");
+        }
+        log.info("文档已提交续传: {}, documentId: {}", ingestFile.getFileName(), id);
+    }
+
+    /**
+     * 启动时恢复本节点被中断的入库任务（进程退出时仍处于处理中的文档），并清理无主的转存文件
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        Set<Path> keep = new HashSet<>();
+        int resumed = 0;
+        for (IngestCheckpoints checkpoint : ingestCheckpointsRepository.findByNode(spoolStore.getNode())) {
+            Documents document = documentsRepository.findById(checkpoint.getDocumentId());
+            IngestFile ingestFile = checkpointFile(checkpoint);
+            if (document == null || ingestFile == null) {
+                // 文档已删除或转存文件丢失，断点无法使用
+                ingestCheckpointsRepository.deleteByDocumentId(checkpoint.getDocumentId());
+                if (document != null && document.getStatus() == DocumentStatus.PROCESSING) {
+                    markFailed(document, "转存文件丢失，请重新上传");
+                }
+                continue;
+            }
+            keep.add(ingestFile.getPath());
+            if (document.getStatus() != DocumentStatus.PROCESSING) {
+                continue;
+            }
+            try {
+                ingestJobExecutor.submit(() -> processDocument(ingestFile, document));
+                resumed++;
+            } catch (RejectedExecutionException e) {
+                markFailed(document, "入库队列已满，可通过 /knowledge/resume 继续入库");
+            }
+        }
+        try {
+            int removed = spoolStore.removeOrphans(keep);
+            log.info("入库断点恢复完成: 恢复 {} 个任务, 保留转存文件 {} 个, 清理遗留文件 {} 个", resumed, keep.size(), removed);
+        } catch (IOException e) {
+            log.warn("遗留转存文件清理失败", e);
+        }
+    }
+
+    /**
+     * 断点对应的转存文件，文件不存在时返回 null
+     */
+    private IngestFile checkpointFile(IngestCheckpoints checkpoint) {
+        if (checkpoint == null || !spoolStore.getNode().equals(checkpoint.getNode())) {
+            return null;
+        }
+        Path path = Path.of(checkpoint.getSpoolPath());
+        if (!Files.isRegularFile(path)) {
             return null;
         }
+        return new IngestFile(path, checkpoint.getFileName(), checkpoint.getFileType(), checkpoint.getFileSize());
+    }
+
+    /**
+     * 查询文档处理状态
+     */
+    public Documents getDocumentStatus(String id) {
+        return documentsRepository.findById(id);
     }
 
+    /**
+     * 标记文档处理失败
+     */
+    private void markFailed(Documents document, String reason) {
+        document.setStatus(DocumentStatus.FAILED);
+        document.setFailReason(reason != null && reason.length() > 500 ? reason.substring(0, 500) : reason);
+        documentsRepository.save(document);
+    }
+
+    /**
+     * 搜索知识库，相同的查询（空白标准化后）在知识库未变化时直接返回缓存的结果
+     */
     public List<Map<String, Object>> search(String query){
+        String normalized = TextNormalizer.normalize(query);
+        return searchResultCache.get(normalized, SEARCH_TOP_K, SEARCH_SIMILARITY_THRESHOLD, () -> doSearch(normalized));
+    }
+
+    private List<Map<String, Object>> doSearch(String query){
         // 执行搜索
         List<Document> results = vectorStore.similaritySearch(
                 SearchRequest.builder()
                         .query(query)
-                        .similarityThreshold(0.50)
-                        .topK(10)
+                        .similarityThreshold(SEARCH_SIMILARITY_THRESHOLD)
+                        .topK(SEARCH_TOP_K)
                         .build()
         );
 
+        // 已标记删除、向量尚未删除的文档不返回，删除状态以数据库为准
+        Set<String> deleting = documentPurger.deletingAmong(results.stream()
+                .map(doc -> String.valueOf(doc.getMetadata().get("documentId")))
+                .collect(Collectors.toSet()));
+        results = results.stream()
+                .filter(doc -> !deleting.contains(String.valueOf(doc.getMetadata().get("documentId"))))
+                .toList();
+
         log.info("搜索完成，找到 [{}] 个相关结果", results.size());
 
         // 格式化结果
@@ -177,6 +898,30 @@ public class KnowledgeFileService {
     }
 
 
+    /**
+     * 检索结果缓存统计
+     */
+    public Map<String, Object> getSearchCacheStats() {
+        return searchResultCache.getStats();
+    }
+
+    /**
+     * 入库内存预算使用情况
+     */
+    public Map<String, Object> getIngestMemoryStats() {
+        return ingestMemoryBudget.getStats();
+    }
+
+    /**
+     * 向量缓存统计，未启用缓存时返回空
+     */
+    public Map<String, Object> getEmbeddingCacheStats() {
+        if (embeddingModel instanceof CachingEmbeddingModel cachingEmbeddingModel) {
+            return cachingEmbeddingModel.getStats();
+        }
+        return Map.of();
+    }
+
     /**
      * 获取支持的文件类型
      */
@@ -185,54 +930,172 @@ public class KnowledgeFileService {
     }
 
 
+    /**
+     * 批量删除文档，文档立即标记为删除中，向量和记录在后台分批删除
+     */
+    public DocumentPurger.PurgeTask deleteDocuments(List<String> ids) {
+        return documentPurger.submit(documentsRepository.findByIds(ids), "批量删除 " + ids.size() + " 个文档");
+    }
+
+    /**
+     * 清空分类下的全部文档
+     */
+    public DocumentPurger.PurgeTask purgeCategory(String category) {
+        return documentPurger.submit(documentsRepository.findByCategory(category), "清空分类: " + category);
+    }
+
+    /**
+     * 查询批量删除进度
+     */
+    public DocumentPurger.PurgeTask getPurgeTask(String taskId) {
+        return documentPurger.getTask(taskId);
+    }
+
+    /**
+     * 删除单个文档
+     * 处理中的文档由入库线程继续写入，删除中的文档由批量删除负责，两者都不能在此删除
+     */
     @Transactional(rollbackFor = Exception.class)
-    public void del(String id){
+    public void del(String id) throws Exception {
+        Documents document = documentsRepository.findById(id);
+        if (document != null && document.getStatus() == DocumentStatus.PROCESSING) {
+            throw new Exception("文档正在处理中，请稍后重试");
+        }
+        if (document != null && document.getStatus() == DocumentStatus.DELETING) {
+            throw new Exception("文档正在删除中");
+        }
         documentsRepository.delById(id);
+        chunkDeduplicator.removeDocuments(List.of(id));
+        documentChunksRepository.deleteByDocumentId(id);
+        IngestFile ingestFile = checkpointFile(ingestCheckpointsRepository.findByDocumentId(id));
+        if (ingestFile != null) {
+            ingestFile.close();
+        }
+        ingestCheckpointsRepository.deleteByDocumentId(id);
         FilterExpressionBuilder filterBuilder =  new FilterExpressionBuilder();
         Filter.Expression documentId = filterBuilder.eq("documentId", id).build();
         vectorStore.delete(documentId);
+        if (document != null) {
+            knowledgeGeneration.advance(document.getCategory());
+        }
     }
 
     /**
      * 根据文件类型处理文档
      */
-    private List<Document> processDocumentByType(MultipartFile file, String fileType) throws IOException {
-        switch (fileType) {
+    private void processDocumentByType(IngestFile ingestFile, Map<String, Object> metadata,
+                                       ChunkBatchWriter writer) throws IOException {
+        switch (ingestFile.getFileType()) {
             case "pdf":
-                return processPdfDocument(file);
+                processPdfDocument(ingestFile, metadata, writer);
+                break;
             case "txt":
-                return processTextDocument(file);
+                processTextDocument(ingestFile, metadata, writer);
+                break;
             default:
-                return null;
+                break;
         }
     }
 
+    /**
+     * PDF是否按页并行解析
+     */
+    private boolean usePdfPageReader(IngestFile ingestFile) {
+        return pdfParallel && ingestFile.getFileSize() <= pdfParallelMaxSize.toBytes();
+    }
+
     /**
      * 处理PDF文档
+     * 按页并行提取文本并切分，再按页码顺序编号、写入；片段偏移量相对于各页标准化文本以空行连接后的全文
      */
-    private List<Document> processPdfDocument(MultipartFile file) throws IOException {
-        Resource resource = new InputStreamResource(file.getInputStream());
-        List<Document> documents = new TikaDocumentReader(resource)
-                .get();
-        log.info("PDF文档处理完成，共 {} 个文档", documents.size());
-        return documents;
+    private void processPdfDocument(IngestFile ingestFile, Map<String, Object> metadata,
+                                    ChunkBatchWriter writer) throws IOException {
+        if (!usePdfPageReader(ingestFile)) {
+            // 按页并行需要保留全部页面文本，大文件改为流式解析
+            processDocumentWithTika(ingestFile, metadata, writer);
+            return;
+        }
+
+        List<PageChunks> pages = pdfPageReader.read(ingestFile.getPath(), this::splitPage);
+        int chunkIndex = 0;
+        int pageOffset = 0;
+        for (PageChunks page : pages) {
+            if (page.text.isEmpty()) {
+                continue;
+            }
+            Map<String, Object> pageMetadata = new HashMap<>(metadata);
+            pageMetadata.put("pageNumber", page.pageNumber);
+            int[] bounds = page.bounds;
+            for (int i = 0; i < bounds.length; i += 2) {
+                String chunkText = page.text.substring(bounds[i], bounds[i + 1]);
+                writer.add(createChunkDocument(chunkText, pageMetadata, chunkIndex++,
+                        pageOffset + bounds[i], pageOffset + bounds[i + 1]));
+            }
+            pageOffset += page.text.length() + PAGE_SEPARATOR.length();
+        }
+        log.info("PDF文档处理完成，共 {} 页，生成 {} 个智能chunk", pages.size(), chunkIndex);
+    }
+
+    /**
+     * 切分单个PDF页面：标准化 → 句子切分 → 智能分块，在PDF解析线程池中执行
+     */
+    private PageChunks splitPage(int pageNumber, String content) {
+        String normalizedContent = content == null || content.trim().isEmpty() ? "" : normalizeText(content);
+        if (normalizedContent.isEmpty()) {
+            return new PageChunks(pageNumber, "", new int[0]);
+        }
+        if (chunkSizer.measure(normalizedContent, 0, normalizedContent.length()) < minChunkSize) {
+            // 内容较少的页面直接作为一个chunk
+            return new PageChunks(pageNumber, normalizedContent, new int[]{0, normalizedContent.length()});
+        }
+
+        SentenceBuffer sentences = splitIntoSentences(normalizedContent);
+        List<ChunkInfo> chunks = createSmartChunks(sentences, normalizedContent);
+        int[] bounds = new int[chunks.size() * 2];
+        for (int i = 0; i < chunks.size(); i++) {
+            bounds[i * 2] = chunks.get(i).startOffset;
+            bounds[i * 2 + 1] = chunks.get(i).endOffset;
+        }
+        return new PageChunks(pageNumber, normalizedContent, bounds);
+    }
+
+    /**
+     * 使用Tika流式解析文档
+     * 解析出的文本分段推入流式切分器，边解析边切分、写入，内存占用与文档大小无关
+     */
+    private void processDocumentWithTika(IngestFile ingestFile, Map<String, Object> metadata,
+                                         ChunkBatchWriter writer) throws IOException {
+        StreamingChunker chunker = new StreamingChunker(targetChunkSize, maxChunkSize, minChunkSize,
+                overlapSize, sentenceBoundaryMode, chunkSizer,
+                (chunkIndex, startOffset, endOffset, text) ->
+                        writer.add(createChunkDocument(text, metadata, chunkIndex, startOffset, endOffset)));
+        ChunkingContentHandler handler = new ChunkingContentHandler(chunker);
+        try (InputStream input = TikaInputStream.get(ingestFile.getPath())) {
+            tikaParser.parse(input, handler, new Metadata(), new ParseContext());
+        } catch (SAXException | TikaException e) {
+            throw new IOException("文档解析失败: " + e.getMessage(), e);
+        }
+        int chunkCount = handler.finish();
+        log.info("Tika流式解析完成，共生成 {} 个智能chunk", chunkCount);
     }
 
     /**
      * 处理文本文档
+     * 边读取边切分，不在内存中保留整篇文档
      */
-    private List<Document> processTextDocument(MultipartFile file) throws IOException {
-        Resource resource = new ByteArrayResource(file.getBytes()) {
-            @Override
-            public String getFilename() {
-                return file.getOriginalFilename();
-            }
-        };
-        DocumentReader reader = new TextReader(resource);
-        List<Document> documents = reader.get();
+    private void processTextDocument(IngestFile ingestFile, Map<String, Object> metadata,
+                                     ChunkBatchWriter writer) throws IOException {
+        Map<String, Object> textMetadata = new HashMap<>(metadata);
+        textMetadata.put("charset", StandardCharsets.UTF_8.name());
 
-        log.info("文本文档处理完成，共 {} 个文档", documents.size());
-        return documents;
+        StreamingChunker chunker = new StreamingChunker(targetChunkSize, maxChunkSize, minChunkSize,
+                overlapSize, sentenceBoundaryMode, chunkSizer,
+                (chunkIndex, startOffset, endOffset, text) ->
+                        writer.add(createChunkDocument(text, textMetadata, chunkIndex, startOffset, endOffset)));
+        try (Reader reader = ingestFile.openReader(StandardCharsets.UTF_8)) {
+            int chunkCount = chunker.consume(reader);
+            log.info("文本文档处理完成，共生成 {} 个智能chunk", chunkCount);
+        }
     }
 
 
@@ -248,115 +1111,22 @@ public class KnowledgeFileService {
     }
 
 
-    /**
-     * 混合策略：递归切分 + 语义边界 + 重叠窗口
-     */
-    private List<Document> splitDocuments(List<Document> documents) {
-        List<Document> resultChunks = new ArrayList<>();
-        
-        for (Document originalDoc : documents) {
-            String content = originalDoc.getText();
-            if (content == null || content.trim().isEmpty()) {
-                continue;
-            }
-            
-            // 1. 文本预处理和标准化
-            String normalizedContent = normalizeText(content);
-            if (normalizedContent.length() < minChunkSize) {
-                // 短文档直接作为一个chunk
-                Document chunk = createChunkDocument(normalizedContent, originalDoc.getMetadata(), 0, 0, normalizedContent.length());
-                resultChunks.add(chunk);
-                continue;
-            }
-            
-            // 2. 句子级别切分
-            List<SentenceInfo> sentences = splitIntoSentences(normalizedContent);
-            if (sentences.isEmpty()) {
-                continue;
-            }
-            
-            // 3. 智能分块：基于目标大小和语义边界
-            List<ChunkInfo> chunks = createSmartChunks(sentences, normalizedContent);
-            
-            // 4. 转换为Document对象并添加元数据
-            for (int i = 0; i < chunks.size(); i++) {
-                ChunkInfo chunkInfo = chunks.get(i);
-                String chunkText = normalizedContent.substring(chunkInfo.startOffset, chunkInfo.endOffset);
-                Document chunkDoc = createChunkDocument(chunkText, originalDoc.getMetadata(), i, chunkInfo.startOffset, chunkInfo.endOffset);
-                resultChunks.add(chunkDoc);
-            }
-        }
-        
-        log.info("文档切分完成，共生成 {} 个智能chunk", resultChunks.size());
-        return resultChunks;
-    }
-
-    
     /**
      * 文本标准化处理
      */
     private String normalizeText(String text) {
-        if (text == null) return "";
-        
-        // 1. 统一换行符
-        String normalized = text.replaceAll("\\r\\n?", "\n");
-        
-        // 2. 清理多余空白字符
-        normalized = normalized.replaceAll("[\\t\\u000B\\f\\u00A0]+", " ");
-        
-        // 3. 压缩多个连续空格为单个空格
-        normalized = normalized.replaceAll(" +", " ");
-        
-        // 4. 清理多个连续换行符
-        normalized = normalized.replaceAll("\n{3,}", "\n\n");
-        
-        return normalized.trim();
+        return TextNormalizer.normalize(text);
     }
     
     /**
-     * 句子切分 - 支持中英文标点符号
+     * 句子切分 - 支持中英文标点符号，切分引擎由 sentence-boundary-mode 决定
      */
-    private List<SentenceInfo> splitIntoSentences(String text) {
-        List<SentenceInfo> sentences = new ArrayList<>();
-        
-        // 句子边界模式：strict(严格) 或 relaxed(宽松)
-        String patternStr = "strict".equals(sentenceBoundaryMode) 
-            ? "(?<=[。！？：；.!?;])\\s+|(?<=\\.\\s)(?=[A-Z])|\\n{2,}"  // 严格模式：标点+空白 或 段落分隔
-            : "(?<=[。！？.!?])\\s*|\\n{2,}";  // 宽松模式：仅主要标点
-            
-        Pattern sentencePattern = Pattern.compile(patternStr);
-        Matcher matcher = sentencePattern.matcher(text);
-        
-        int lastEnd = 0;
-        while (matcher.find()) {
-            int start = lastEnd;
-            int end = matcher.start();
-            
-            if (end > start) {
-                String sentence = text.substring(start, end).trim();
-                if (!sentence.isEmpty()) {
-                    // 重新计算trim后的精确偏移量
-                    int actualStart = findActualStart(text, start, end);
-                    int actualEnd = findActualEnd(text, actualStart, end);
-                    sentences.add(new SentenceInfo(actualStart, actualEnd));
-                }
-            }
-            lastEnd = matcher.end();
-        }
-        
-        // 处理最后一个句子
-        if (lastEnd < text.length()) {
-            String sentence = text.substring(lastEnd).trim();
-            if (!sentence.isEmpty()) {
-                int actualStart = findActualStart(text, lastEnd, text.length());
-                int actualEnd = findActualEnd(text, actualStart, text.length());
-                sentences.add(new SentenceInfo(actualStart, actualEnd));
-            }
-        }
+    private SentenceBuffer splitIntoSentences(String text) {
+        SentenceBuffer sentences = SentenceSegmenter.segment(text, sentenceBoundaryMode);
         
         // 如果没有检测到句子边界，将整个文本作为一个句子
         if (sentences.isEmpty() && !text.trim().isEmpty()) {
-            sentences.add(new SentenceInfo(0, text.length()));
+            sentences.add(0, text.length());
         }
         
         return sentences;
@@ -365,71 +1135,10 @@ public class KnowledgeFileService {
     /**
      * 智能分块算法 - 贪心聚合 + 重叠窗口
      */
-    private List<ChunkInfo> createSmartChunks(List<SentenceInfo> sentences, String text) {
+    private List<ChunkInfo> createSmartChunks(SentenceBuffer sentences, String text) {
         List<ChunkInfo> chunks = new ArrayList<>();
-        if (sentences.isEmpty()) return chunks;
-        
-        int currentIndex = 0;
-        while (currentIndex < sentences.size()) {
-            int chunkStart = sentences.get(currentIndex).startOffset;
-            int chunkEnd = chunkStart;
-            int sentenceCount = 0;
-            
-            // 贪心聚合：在目标大小内尽可能多地包含句子
-            for (int i = currentIndex; i < sentences.size(); i++) {
-                SentenceInfo sentence = sentences.get(i);
-                int candidateEnd = sentence.endOffset;
-                int candidateSize = candidateEnd - chunkStart;
-                
-                // 检查是否超过最大限制
-                if (candidateSize > maxChunkSize) {
-                    if (sentenceCount == 0) {
-                        // 单个句子过长，强制切分
-                        chunkEnd = Math.min(chunkStart + maxChunkSize, text.length());
-                        break;
-                    } else {
-                        // 已有句子，停止聚合
-                        break;
-                    }
-                }
-                
-                chunkEnd = candidateEnd;
-                sentenceCount++;
-                
-                // 达到目标大小，可以停止聚合
-                if (candidateSize >= targetChunkSize) {
-                    break;
-                }
-            }
-            
-            // 确保chunk至少有最小大小（除非是最后一个chunk）
-            if (chunkEnd - chunkStart < minChunkSize && currentIndex + sentenceCount < sentences.size()) {
-                // 尝试添加更多句子达到最小大小
-                for (int i = currentIndex + sentenceCount; i < sentences.size(); i++) {
-                    SentenceInfo sentence = sentences.get(i);
-                    int candidateEnd = sentence.endOffset;
-                    if (candidateEnd - chunkStart <= maxChunkSize) {
-                        chunkEnd = candidateEnd;
-                        sentenceCount++;
-                        if (chunkEnd - chunkStart >= minChunkSize) break;
-                    } else {
-                        break;
-                    }
-                }
-            }
-            
-            chunks.add(new ChunkInfo(chunkStart, chunkEnd));
-            
-            // 计算下一个chunk的起始位置（考虑重叠）
-            int nextStart = Math.max(chunkEnd - overlapSize, chunkStart + 1);
-            currentIndex = findNextSentenceIndex(sentences, nextStart, currentIndex + 1);
-            
-            // 避免无限循环
-            if (currentIndex <= 0) {
-                currentIndex = Math.max(currentIndex + sentenceCount, currentIndex + 1);
-            }
-        }
-        
+        new ChunkPlanner(targetChunkSize, maxChunkSize, minChunkSize, overlapSize, chunkSizer)
+                .plan(sentences, text, (start, end) -> chunks.add(new ChunkInfo(start, end)));
         return chunks;
     }
     
@@ -451,16 +1160,17 @@ public class KnowledgeFileService {
         // 稳定的chunk ID
         if (enableContentHash) {
             String documentId = String.valueOf(originalMetadata.getOrDefault("documentId", ""));
-            String stableId = generateStableChunkId(documentId, startOffset, endOffset, chunkText);
+            String contentHash = HashUtils.sha256Hex(chunkText);
+            String stableId = generateStableChunkId(documentId, startOffset, endOffset, contentHash);
             metadata.put("chunkId", stableId);
-            metadata.put("contentHash", hashString(chunkText));
+            metadata.put("contentHash", contentHash);
         } else {
             metadata.put("chunkId", "chunk_" + chunkIndex);
         }
         
         // 结构信息（如果启用）
         if (preserveStructure) {
-            analyzeAndAddStructureInfo(chunkText, metadata);
+            featureExtractor.extract(chunkText, metadata);
         }
         
         return new Document(chunkText, metadata);
@@ -468,96 +1178,287 @@ public class KnowledgeFileService {
     
     /**
      * 生成稳定的chunk ID
+     * 只作标识、不需防篡改，使用非加密的 MurmurHash3，内容本身已由 contentHash 摘要，不再重复计算摘要
      */
-    private String generateStableChunkId(String documentId, int startOffset, int endOffset, String content) {
-        String input = documentId + ":" + startOffset + ":" + endOffset + ":" + hashString(content);
-        return hashString(input).substring(0, 16); // 取前16位作为ID
+    private String generateStableChunkId(String documentId, int startOffset, int endOffset, String contentHash) {
+        String input = documentId + ":" + startOffset + ":" + endOffset + ":" + contentHash;
+        return HashUtils.murmur3Hex(input).substring(0, 16); // 取前16位作为ID
     }
     
+    // ------------------------- 内部数据结构 -------------------------
+
     /**
-     * 分析并添加结构信息
+     * 分批写入向量数据库，攒满一批立即交给向量化调度器并发写入，在途批次有上限，避免整篇文档的片段同时驻留内存。
+     * 重新上传时按内容哈希对照片段台账：内容未变化的片段直接复用原向量，不再重复向量化，
+     * 新文档中不再出现的旧片段在处理完成后删除
+     *
+     * <p>向量ID由文档ID、本次入库的目标版本号和片段序号生成，同一次入库重试或续传时不变：
+     * 写入前先按ID删除，清除上次写入向量后、记录台账前中断留下的残留，不会产生重复向量
      */
-    private void analyzeAndAddStructureInfo(String chunkText, Map<String, Object> metadata) {
-        // 检测标题
-        if (chunkText.matches("^#+\\s+.+") || chunkText.matches("^[A-Z\\s]+:.*")) {
-            metadata.put("structureType", "heading");
+    private class ChunkBatchWriter {
+
+        private final String documentId;
+
+        /**
+         * 本次入库成功后的版本号
+         */
+        private final int targetVersion;
+
+        private final String category;
+
+        private final List<Document> batch = new ArrayList<>(batchSize);
+
+        /**
+         * 近似重复片段的链接记录，随下一批次写入台账
+         */
+        private final List<DocumentChunks> links = new ArrayList<>();
+
+        /**
+         * 已提交给调度器、尚未确认完成的批次，按提交顺序排列
+         */
+        private final Deque<PendingBatch> inFlight = new ArrayDeque<>();
+
+        private int submitted = 0;
+
+        /**
+         * 可复用的旧片段：内容哈希 → 向量ID，相同内容可能出现多次
+         */
+        private final Map<String, Deque<String>> reusable = new HashMap<>();
+
+        private final Map<String, DocumentChunks> existingChunks = new HashMap<>();
+
+        private int stored = 0;
+
+        private int reused = 0;
+
+        private int linked = 0;
+
+        private int removed = 0;
+
+        ChunkBatchWriter(Documents document) {
+            this.documentId = document.getId();
+            this.targetVersion = document.getVersion() != null ? document.getVersion() + 1 : 1;
+            this.category = document.getCategory();
+            List<DocumentChunks> existing = documentChunksRepository.findByDocumentId(documentId);
+            if (existing.isEmpty()) {
+                // 没有台账记录（新文档或台账建立前入库的文档），按文档ID清理可能残留的旧片段
+                vectorStore.delete(new FilterExpressionBuilder().eq("documentId", documentId).build());
+                return;
+            }
+            for (DocumentChunks chunk : existing) {
+                existingChunks.put(chunk.getId(), chunk);
+                String key = chunk.getContentHash() != null ? chunk.getContentHash() : "";
+                reusable.computeIfAbsent(key, k -> new ArrayDeque<>()).add(chunk.getId());
+            }
+            log.info("文档 {} 已有 {} 个文档片段, 内容未变化的片段将直接复用", documentId, existing.size());
         }
-        // 检测列表
-        else if (chunkText.matches("^\\s*[\\-\\*\\+]\\s+.*") || chunkText.matches("^\\s*\\d+\\.\\s+.*")) {
-            metadata.put("structureType", "list");
+
+        void add(Document chunk) {
+            Object contentHash = chunk.getMetadata().get("contentHash");
+            if (contentHash != null) {
+                Deque<String> ids = reusable.get(contentHash.toString());
+                if (ids != null && !ids.isEmpty()) {
+                    ids.poll();
+                    reused++;
+                    return;
+                }
+            }
+            chunk = new Document(vectorId(chunk), chunk.getText(), chunk.getMetadata());
+            // 同分类其他文档中有近似重复的片段时只记录链接，不向量化
+            Long simhash = chunkDeduplicator.fingerprint(chunk.getText());
+            if (simhash != null) {
+                chunk.getMetadata().put("simhash", simhash);
+                String duplicateOf = chunkDeduplicator.findDuplicate(category, documentId, simhash);
+                if (duplicateOf != null && contentHash != null) {
+                    DocumentChunks link = new DocumentChunks();
+                    link.setId(chunk.getId());
+                    link.setDocumentId(documentId);
+                    link.setContentHash(contentHash.toString());
+                    link.setSimhash(simhash);
+                    link.setDuplicateOf(duplicateOf);
+                    links.add(link);
+                    linked++;
+                    return;
+                }
+            }
+            batch.add(chunk);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
         }
-        // 检测表格迹象
-        else if (chunkText.contains("|") && chunkText.lines().count() > 1) {
-            metadata.put("structureType", "table");
+
+        /**
+         * 按片段序号生成向量ID；与台账中已有片段的ID相同时（切分配置变化后重新入库）改用随机ID，避免覆盖复用中的向量
+         */
+        private String vectorId(Document chunk) {
+            String name = documentId + ":" + targetVersion + ":" + chunk.getMetadata().get("chunkIndex");
+            String id = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+            return existingChunks.containsKey(id) ? UUID.randomUUID().toString() : id;
         }
-        // 检测代码块
-        else if (chunkText.contains("```") || chunkText.matches(".*\\{.*\\}.*")) {
-            metadata.put("structureType", "code");
+
+        /**
+         * 将当前批次交给向量化调度器并发写入，在途批次过多时等待最早的批次完成
+         */
+        void flush() {
+            if (!links.isEmpty()) {
+                documentChunksRepository.saveAll(links);
+                links.clear();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Document> documents = new ArrayList<>(batch);
+            batch.clear();
+            int from = submitted + 1;
+            submitted += documents.size();
+            inFlight.add(new PendingBatch(from, submitted, embeddingDispatcher.dispatch(() -> store(documents))));
+            while (inFlight.size() >= embeddingDispatcher.maxInFlight()) {
+                awaitOldest();
+            }
         }
-        // 普通段落
-        else {
-            metadata.put("structureType", "paragraph");
+
+        /**
+         * 向量化并写入一个批次，同时记录片段台账，在调度器线程中执行
+         * 台账写入失败时删除本批次的向量，台账中没有的向量不会残留
+         */
+        private void store(List<Document> documents) {
+            List<String> ids = documents.stream().map(Document::getId).toList();
+            // 清除上次中断时已写入向量、未记入台账的同ID片段
+            vectorStore.delete(ids);
+
+            List<DocumentChunks> ledger = new ArrayList<>(documents.size());
+            for (Document chunk : documents) {
+                DocumentChunks documentChunk = new DocumentChunks();
+                documentChunk.setId(chunk.getId());
+                documentChunk.setDocumentId(documentId);
+                Object contentHash = chunk.getMetadata().get("contentHash");
+                documentChunk.setContentHash(contentHash != null ? contentHash.toString() : null);
+                if (chunk.getMetadata().get("simhash") instanceof Long simhash) {
+                    documentChunk.setSimhash(simhash);
+                }
+                ledger.add(documentChunk);
+            }
+            try {
+                vectorStore.add(documents);
+                documentChunksRepository.saveAll(ledger);
+            } catch (RuntimeException e) {
+                try {
+                    vectorStore.delete(ids);
+                } catch (RuntimeException cleanup) {
+                    log.warn("文档 {} 写入失败后清理本批次向量失败，重试时按ID清除", documentId, cleanup);
+                }
+                throw e;
+            }
+            for (DocumentChunks documentChunk : ledger) {
+                if (documentChunk.getSimhash() != null) {
+                    chunkDeduplicator.add(category, documentId, documentChunk.getId(), documentChunk.getSimhash());
+                }
+            }
         }
-        
-        // 计算语义密度（非停用词比例）
-        String[] words = chunkText.toLowerCase().split("\\s+");
-        List<String> stopWords = List.of("的", "是", "在", "有", "和", "了", "不", "一", "这", "那", "我", "你", "他", 
-                                       "the", "and", "is", "in", "to", "of", "a", "that", "it", "with", "for");
-        long contentWords = java.util.Arrays.stream(words)
-                .filter(word -> !stopWords.contains(word) && word.length() > 1)
-                .count();
-        double semanticDensity = words.length > 0 ? (double) contentWords / words.length : 0.0;
-        metadata.put("semanticDensity", Math.round(semanticDensity * 100.0) / 100.0);
-    }
-    
-    // ------------------------- 辅助工具方法 -------------------------
-    
-    private int findActualStart(String text, int start, int end) {
-        while (start < end && Character.isWhitespace(text.charAt(start))) {
-            start++;
+
+        /**
+         * 等待最早提交的批次完成，日志按批次顺序输出
+         */
+        private void awaitOldest() {
+            PendingBatch pending = inFlight.poll();
+            try {
+                pending.future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            log.info("文档 {} 已存储第 {} - {} 个文档片段", documentId, pending.from, pending.to);
+            stored += pending.to - pending.from + 1;
+            ingestCheckpointsRepository.updateProgress(documentId, pending.to);
         }
-        return start;
-    }
-    
-    private int findActualEnd(String text, int start, int end) {
-        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
-            end--;
+
+        /**
+         * 处理失败时等待在途批次结束，避免与重试任务同时写入；已完成的批次已记入台账，重试时直接复用
+         */
+        void abort() {
+            batch.clear();
+            links.clear();
+            while (!inFlight.isEmpty()) {
+                PendingBatch pending = inFlight.poll();
+                try {
+                    pending.future.join();
+                    ingestCheckpointsRepository.updateProgress(documentId, pending.to);
+                } catch (RuntimeException e) {
+                    log.debug("文档 {} 第 {} - {} 个文档片段写入失败: {}", documentId, pending.from, pending.to, e.getMessage());
+                }
+            }
         }
-        return end;
-    }
-    
-    private int findNextSentenceIndex(List<SentenceInfo> sentences, int targetOffset, int minIndex) {
-        for (int i = minIndex; i < sentences.size(); i++) {
-            if (sentences.get(i).startOffset >= targetOffset) {
-                return i;
+
+        /**
+         * 写入剩余片段并删除不再出现的旧片段
+         */
+        void finish() {
+            flush();
+            while (!inFlight.isEmpty()) {
+                awaitOldest();
+            }
+            List<DocumentChunks> stale = new ArrayList<>();
+            reusable.values().forEach(ids -> ids.forEach(id -> stale.add(existingChunks.get(id))));
+            if (stale.isEmpty()) {
+                return;
+            }
+            // 被其他文档链接的旧片段转给链接方，不删除
+            Set<String> transferred = chunkDeduplicator.removeChunks(documentId, stale);
+            List<String> staleIds = stale.stream()
+                    .map(DocumentChunks::getId)
+                    .filter(id -> !transferred.contains(id))
+                    .toList();
+            if (staleIds.isEmpty()) {
+                return;
             }
+            vectorStore.delete(staleIds);
+            documentChunksRepository.deleteByIds(staleIds);
+            removed = staleIds.size();
+        }
+
+        int getStored() {
+            return stored;
+        }
+
+        int getReused() {
+            return reused;
+        }
+
+        int getLinked() {
+            return linked;
+        }
+
+        int getRemoved() {
+            return removed;
         }
-        return sentences.size();
     }
     
-    private String hashString(String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hash) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            return Integer.toHexString(input.hashCode());
+    private static class PendingBatch {
+        final int from;
+        final int to;
+        final CompletableFuture<Void> future;
+
+        PendingBatch(int from, int to, CompletableFuture<Void> future) {
+            this.from = from;
+            this.to = to;
+            this.future = future;
         }
     }
     
-    // ------------------------- 内部数据结构 -------------------------
-    
-    private static class SentenceInfo {
-        final int startOffset;
-        final int endOffset;
-        
-        SentenceInfo(int startOffset, int endOffset) {
-            this.startOffset = startOffset;
-            this.endOffset = endOffset;
+    /**
+     * 单个PDF页面的切分结果，bounds 依次为各片段在页面文本中的起止偏移量
+     */
+    private static class PageChunks {
+        final int pageNumber;
+        final String text;
+        final int[] bounds;
+
+        PageChunks(int pageNumber, String text, int[] bounds) {
+            this.pageNumber = pageNumber;
+            this.text = text;
+            this.bounds = bounds;
         }
     }
     
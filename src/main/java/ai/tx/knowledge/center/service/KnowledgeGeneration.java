@@ -0,0 +1,79 @@
+package ai.tx.knowledge.center.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 知识库版本号
+ * 入库任务结束、文档删除等会改变检索结果的操作完成后加一，检索结果缓存按版本号判断是否过期。
+ * 入库过程中已写入的片段在任务结束后才使缓存失效，与文档在任务结束后才标记为完成一致。
+ *
+ * <p>除全局版本号外，每个分类另有版本号，只在该分类的文档变化时加一，供按分类缓存的问答结果使用。
+ *
+ * <p>版本号保存在 Redis 中（INCR/GET），多个节点共用，任一节点上的变化都会使所有节点的缓存过期。
+ * Redis 不可用时每次读取返回不同的负数，缓存全部不命中，不会返回旧结果。
+ *
+ * @author tanxiong
+ */
+@Slf4j
+@Component
+public class KnowledgeGeneration {
+
+    private static final String KEY = "knowledge:generation";
+
+    private static final String CATEGORY_KEY_PREFIX = "knowledge:generation:category:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final AtomicLong unavailable = new AtomicLong();
+
+    public long current() {
+        return read(KEY);
+    }
+
+    /**
+     * 分类的版本号，分类从未变化时为 0
+     */
+    public long current(String category) {
+        return read(CATEGORY_KEY_PREFIX + category);
+    }
+
+    /**
+     * 分类下的文档已变化，同时推进全局版本号
+     */
+    public void advance(String category) {
+        advance(List.of(String.valueOf(category)));
+    }
+
+    /**
+     * 多个分类下的文档已变化
+     * 变化已经完成，更新失败只记录日志，不影响调用方
+     */
+    public void advance(Collection<String> changed) {
+        try {
+            for (String category : changed) {
+                stringRedisTemplate.opsForValue().increment(CATEGORY_KEY_PREFIX + category);
+            }
+            stringRedisTemplate.opsForValue().increment(KEY);
+        } catch (RuntimeException e) {
+            log.error("知识库版本号更新失败，缓存在过期前可能返回旧结果: {}", changed, e);
+        }
+    }
+
+    private long read(String key) {
+        try {
+            String value = stringRedisTemplate.opsForValue().get(key);
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (RuntimeException e) {
+            log.warn("知识库版本号读取失败，本次不使用缓存: {}", e.getMessage());
+            return -unavailable.incrementAndGet();
+        }
+    }
+}
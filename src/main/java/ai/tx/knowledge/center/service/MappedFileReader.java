@@ -0,0 +1,123 @@
+package ai.tx.knowledge.center.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射的文本读取器
+ * 文件按固定大小的窗口映射到内存，由 CharsetDecoder 流式解码，文件内容不经过堆内的字节数组；
+ * 多字节字符跨窗口时，下一个窗口从未解码的字节处开始映射。非法字节按替换字符处理，与 InputStreamReader 一致。
+ * 非线程安全。
+ *
+ * @author tanxiong
+ */
+public class MappedFileReader extends Reader {
+
+    /**
+     * 单个映射窗口的大小
+     */
+    private static final long WINDOW_SIZE = 16L * 1024 * 1024;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private final CharsetDecoder decoder;
+
+    /**
+     * 已解码、尚未读取的字符
+     */
+    private final CharBuffer decoded = CharBuffer.allocate(8192);
+
+    private MappedByteBuffer window;
+
+    /**
+     * 当前窗口在文件中的起始位置
+     */
+    private long windowStart = 0;
+
+    private boolean endOfInput = false;
+
+    private boolean flushed = false;
+
+    public MappedFileReader(Path path, Charset charset) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.window = map(0);
+        decoded.flip();
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!decoded.hasRemaining() && !fill()) {
+            return -1;
+        }
+        int n = Math.min(length, decoded.remaining());
+        decoded.get(buffer, offset, n);
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * 解码下一批字符
+     *
+     * @return 是否还有字符
+     */
+    private boolean fill() throws IOException {
+        decoded.clear();
+        try {
+            while (decoded.position() == 0 && !flushed) {
+                if (!endOfInput) {
+                    boolean lastWindow = windowStart + window.limit() >= size;
+                    CoderResult result = decoder.decode(window, decoded, lastWindow);
+                    if (result.isError()) {
+                        result.throwException();
+                    }
+                    if (result.isUnderflow()) {
+                        if (lastWindow) {
+                            endOfInput = true;
+                        } else {
+                            // 窗口末尾可能残留半个字符，从未解码的位置重新映射
+                            window = map(windowStart + window.position());
+                        }
+                    }
+                } else {
+                    CoderResult result = decoder.flush(decoded);
+                    if (result.isError()) {
+                        result.throwException();
+                    }
+                    flushed = result.isUnderflow();
+                }
+            }
+        } finally {
+            decoded.flip();
+        }
+        return decoded.hasRemaining();
+    }
+
+    private MappedByteBuffer map(long position) throws IOException {
+        windowStart = position;
+        long length = Math.min(WINDOW_SIZE, size - position);
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+}
@@ -0,0 +1,176 @@
+package ai.tx.knowledge.center.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * PDF按页并行解析
+ * 页面按固定页数划分为若干区间，在 fork-join 线程池中并行提取文本并交给页面处理函数（标准化、切分等），
+ * 结果按页码顺序返回，与执行顺序无关。
+ *
+ * <p>PDDocument 不是线程安全的，每个工作线程各自打开一份文档，同一次解析中重复使用
+ */
+@Slf4j
+@Component
+public class PdfPageReader {
+
+    @Value("${rag.pdf.parallelism:0}")
+    private int parallelism;
+
+    @Value("${rag.pdf.pages-per-task:4}")
+    private int pagesPerTask;
+
+    private ForkJoinPool pool;
+
+    /**
+     * 页面处理函数，在解析线程池中执行
+     */
+    @FunctionalInterface
+    public interface PageHandler<T> {
+
+        /**
+         * @param pageNumber 页码，从1开始
+         * @param text       页面原始文本
+         */
+        T handle(int pageNumber, String text);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        pagesPerTask = Math.max(1, pagesPerTask);
+        pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("pdf-parse-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        log.info("PDF解析线程池初始化完成: parallelism={}, pagesPerTask={}", parallelism, pagesPerTask);
+    }
+
+    /**
+     * 并行解析PDF的每一页
+     *
+     * @return 按页码顺序排列的处理结果，第 i 个元素对应第 i+1 页
+     */
+    public <T> List<T> read(Path path, PageHandler<T> handler) throws IOException {
+        int pageCount;
+        try (PDDocument document = Loader.loadPDF(path.toFile())) {
+            pageCount = document.getNumberOfPages();
+        }
+
+        Object[] results = new Object[pageCount];
+        Map<Thread, PageExtractor> extractors = new ConcurrentHashMap<>();
+        AtomicBoolean aborted = new AtomicBoolean();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        try {
+            for (int first = 1; first <= pageCount; first += pagesPerTask) {
+                int from = first;
+                int to = Math.min(pageCount, first + pagesPerTask - 1);
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    PageExtractor extractor = extractors.computeIfAbsent(Thread.currentThread(), t -> open(path));
+                    for (int page = from; page <= to && !aborted.get(); page++) {
+                        results[page - 1] = handler.handle(page, extractor.extract(page));
+                    }
+                }, pool));
+            }
+            for (CompletableFuture<Void> task : tasks) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            aborted.set(true);
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("PDF解析失败: " + path, cause);
+        } catch (InterruptedException e) {
+            aborted.set(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("PDF解析被中断: " + path, e);
+        } finally {
+            // 出错后其余任务处理完当前页即退出，全部结束后再关闭文档
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture<?>[]::new)).exceptionally(e -> null).join();
+            extractors.values().forEach(PageExtractor::close);
+        }
+
+        log.info("PDF按页解析完成: {} 页, {} 个任务, {} 个工作线程", pageCount, tasks.size(), extractors.size());
+        @SuppressWarnings("unchecked")
+        List<T> pages = (List<T>) Arrays.asList(results);
+        return pages;
+    }
+
+    private PageExtractor open(Path path) {
+        try {
+            return new PageExtractor(Loader.loadPDF(path.toFile()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        pool.shutdown();
+        if (!pool.awaitTermination(60, TimeUnit.SECONDS)) {
+            log.warn("PDF解析线程池关闭超时，剩余任务将被中断");
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 单个工作线程持有的文档和文本提取器
+     */
+    private static class PageExtractor {
+
+        private final PDDocument document;
+
+        private final PDFTextStripper stripper = new PDFTextStripper();
+
+        PageExtractor(PDDocument document) {
+            this.document = document;
+        }
+
+        String extract(int pageNumber) {
+            stripper.setStartPage(pageNumber);
+            stripper.setEndPage(pageNumber);
+            try {
+                return stripper.getText(document);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            try {
+                document.close();
+            } catch (IOException e) {
+                log.warn("PDF文档关闭失败", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ai.tx.knowledge.center.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 检索结果缓存
+ * 按标准化后的查询和检索参数缓存结果，容量满时淘汰最久未使用的条目；
+ * 条目记录写入时的知识库版本号，版本号（Redis 中多节点共用）变化后视为过期；
+ * 另按 max-age 限制条目的最长存活时间，版本号更新失败时旧结果最多保留这么久。
+ *
+ * <p>统计中的 savedMillis 为命中的条目在未命中时实际耗费的检索时间之和（查询向量化 + 向量检索）
+ *
+ * @author tanxiong
+ */
+@Slf4j
+@Component
+public class SearchResultCache {
+
+    @Autowired
+    private KnowledgeGeneration knowledgeGeneration;
+
+    @Value("${rag.search-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.search-cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${rag.search-cache.max-age:10m}")
+    private Duration maxAge;
+
+    private Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong stale = new AtomicLong();
+
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    private final AtomicLong missNanos = new AtomicLong();
+
+    private record Entry(long generation, List<Map<String, Object>> results, long costNanos, long createdNanos) {
+    }
+
+    @PostConstruct
+    public void init() {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        log.info("检索结果缓存: enabled={}, maxEntries={}, maxAge={}", enabled, maxEntries, maxAge);
+    }
+
+    /**
+     * 读取缓存，未命中或已过期时执行检索并缓存结果
+     *
+     * @param query    标准化后的查询
+     * @param topK     检索参数，与查询一起作为缓存键
+     * @param searcher 实际检索
+     */
+    public List<Map<String, Object>> get(String query, int topK, double threshold,
+                                         Supplier<List<Map<String, Object>>> searcher) {
+        if (!enabled) {
+            return searcher.get();
+        }
+        String key = topK + ":" + threshold + ":" + query;
+        // 先读取版本号，检索期间知识库变化时写入的条目直接过期
+        long generation = knowledgeGeneration.current();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.generation() == generation
+                && System.nanoTime() - entry.createdNanos() <= maxAge.toNanos()) {
+            hits.incrementAndGet();
+            savedNanos.addAndGet(entry.costNanos());
+            return entry.results();
+        }
+        if (entry != null) {
+            stale.incrementAndGet();
+        }
+        misses.incrementAndGet();
+
+        long start = System.nanoTime();
+        List<Map<String, Object>> results = List.copyOf(searcher.get());
+        long cost = System.nanoTime() - start;
+        missNanos.addAndGet(cost);
+        synchronized (entries) {
+            entries.put(key, new Entry(generation, results, cost, System.nanoTime()));
+        }
+        return results;
+    }
+
+    /**
+     * 缓存统计：命中率、节省的检索耗时、当前版本号
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("entries", size);
+        stats.put("maxEntries", maxEntries);
+        stats.put("generation", knowledgeGeneration.current());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("staleMisses", stale.get());
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        stats.put("savedMillis", savedNanos.get() / 1_000_000);
+        stats.put("avgMissMillis", missCount == 0 ? 0 : missNanos.get() / missCount / 1_000_000.0);
+        return stats;
+    }
+}
@@ -0,0 +1,275 @@
+package ai.tx.knowledge.center.service;
+
+import ai.tx.knowledge.center.service.chunking.TextNormalizer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * 问答语义缓存
+ * 按分类缓存会话首轮问题的向量和回答，新问题与同分类下已缓存问题的余弦距离不超过阈值时直接回放缓存的回答，
+ * 不再检索和调用大模型。只缓存首轮问题，多轮对话的回答依赖历史消息，不能复用。
+ *
+ * <p>条目记录写入时分类的版本号，分类下的文档变化后整个分类的缓存清空。版本号保存在 Redis 中，
+ * 任一节点上的变化都会清空所有节点上该分类的缓存；版本号读取失败时不使用缓存。
+ * 条目另按 max-age 限制最长存活时间，版本号更新失败时旧回答最多保留这么久。
+ * 问题向量经查询向量缓存获取，问答检索时对同一问题的向量化直接命中，不增加向量化调用。
+ *
+ * @author tanxiong
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private KnowledgeGeneration knowledgeGeneration;
+
+    @Value("${rag.answer-cache.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 判定为同一问题的最大余弦距离（1 - 余弦相似度）
+     */
+    @Value("${rag.answer-cache.max-distance:0.05}")
+    private double maxDistance;
+
+    @Value("${rag.answer-cache.max-entries-per-category:500}")
+    private int maxEntriesPerCategory;
+
+    @Value("${rag.answer-cache.max-age:30m}")
+    private Duration maxAge;
+
+    private final Map<String, CategoryAnswers> categories = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong stores = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * 缓存的回答，按流式输出时的分段回放
+     *
+     * @param text 完整回答
+     * @param ends 每一段在 text 中的结束位置
+     */
+    private record Answer(String text, int[] ends) {
+    }
+
+    /**
+     * 已缓存的问题
+     *
+     * @param vector 归一化后的问题向量，点积即余弦相似度
+     */
+    private record Entry(float[] vector, Answer answer, long createdNanos) {
+    }
+
+    /**
+     * 单个分类的缓存，整体属于同一个分类版本号
+     */
+    private class CategoryAnswers {
+
+        private final long generation;
+
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntriesPerCategory;
+            }
+        };
+
+        CategoryAnswers(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * 一次查询的结果，未命中时保留问题向量和查询时的版本号，回答生成后据此写入
+     */
+    public static final class Probe {
+
+        private final String category;
+        private final String question;
+        private final float[] vector;
+        private final long generation;
+        private final Answer answer;
+
+        private Probe(String category, String question, float[] vector, long generation, Answer answer) {
+            this.category = category;
+            this.question = question;
+            this.vector = vector;
+            this.generation = generation;
+            this.answer = answer;
+        }
+
+        public boolean isHit() {
+            return answer != null;
+        }
+
+        public String getAnswer() {
+            return answer != null ? answer.text() : null;
+        }
+
+        /**
+         * 按原有分段回放缓存的回答
+         */
+        public Flux<String> replay() {
+            int[] ends = answer.ends();
+            return Flux.fromStream(IntStream.range(0, ends.length)
+                    .mapToObj(i -> answer.text().substring(i == 0 ? 0 : ends[i - 1], ends[i])));
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        maxEntriesPerCategory = Math.max(1, maxEntriesPerCategory);
+        log.info("问答语义缓存: enabled={}, maxDistance={}, maxEntriesPerCategory={}, maxAge={}",
+                enabled, maxDistance, maxEntriesPerCategory, maxAge);
+    }
+
+    /**
+     * 查找语义相同的已缓存问题
+     *
+     * @return 未启用或向量化失败时返回 null
+     */
+    public Probe probe(String category, String question) {
+        if (!enabled) {
+            return null;
+        }
+        String normalized = TextNormalizer.normalize(question);
+        // 先读取版本号，回答生成期间分类变化时不写入
+        long generation = knowledgeGeneration.current(category);
+        if (generation < 0) {
+            // 版本号读取失败，无法判断缓存是否过期，也不清空已有的缓存
+            return null;
+        }
+        float[] vector;
+        try {
+            vector = normalize(embeddingModel.embed(normalized));
+        } catch (Exception e) {
+            log.warn("问答语义缓存: 问题向量化失败，跳过缓存: {}", e.getMessage());
+            return null;
+        }
+
+        Entry best = null;
+        double bestSimilarity = -1;
+        CategoryAnswers answers = categories.get(category);
+        if (answers != null && answers.generation != generation) {
+            categories.remove(category, answers);
+            invalidations.incrementAndGet();
+            answers = null;
+        }
+        if (answers != null) {
+            long now = System.nanoTime();
+            synchronized (answers) {
+                answers.entries.values().removeIf(entry -> now - entry.createdNanos() > maxAge.toNanos());
+                for (Entry entry : answers.entries.values()) {
+                    double similarity = dot(vector, entry.vector());
+                    if (similarity > bestSimilarity) {
+                        bestSimilarity = similarity;
+                        best = entry;
+                    }
+                }
+            }
+        }
+        if (best != null && 1 - bestSimilarity <= maxDistance) {
+            hits.incrementAndGet();
+            log.debug("问答语义缓存命中: category: {}, 距离: {}", category, 1 - bestSimilarity);
+            return new Probe(category, normalized, vector, generation, best.answer());
+        }
+        misses.incrementAndGet();
+        return new Probe(category, normalized, vector, generation, null);
+    }
+
+    /**
+     * 缓存未命中问题生成的回答，生成期间分类已变化时不写入
+     *
+     * @param fragments 流式输出的各段回答
+     */
+    public void store(Probe probe, List<String> fragments) {
+        if (probe == null || probe.isHit() || fragments.isEmpty()
+                || knowledgeGeneration.current(probe.category) != probe.generation) {
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        int[] ends = new int[fragments.size()];
+        for (int i = 0; i < fragments.size(); i++) {
+            text.append(fragments.get(i));
+            ends[i] = text.length();
+        }
+        CategoryAnswers answers = categories.compute(probe.category, (key, existing) ->
+                existing != null && existing.generation == probe.generation ? existing : new CategoryAnswers(probe.generation));
+        synchronized (answers) {
+            answers.entries.put(probe.question, new Entry(probe.vector, new Answer(text.toString(), ends), System.nanoTime()));
+        }
+        stores.incrementAndGet();
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        int size = 0;
+        for (CategoryAnswers answers : categories.values()) {
+            synchronized (answers) {
+                size += answers.entries.size();
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxDistance", maxDistance);
+        stats.put("categories", categories.size());
+        stats.put("entries", size);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        stats.put("stores", stores.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] unit = new float[vector.length];
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                unit[i] = (float) (vector[i] / norm);
+            }
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,113 @@
+package ai.tx.knowledge.center.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * 上传文件转存目录
+ * 上传内容先写入专用目录再异步入库，入库结束后由 {@link IngestFile#close()} 删除；
+ * 未完成的入库任务保留转存文件用于断点续传，其余遗留文件在启动时清理
+ */
+@Slf4j
+@Component
+public class SpoolStore {
+
+    private static final String PREFIX = "knowledge-ingest-";
+
+    @Value("${rag.ingest.spool-dir:./data/spool}")
+    private Path spoolDir;
+
+    /**
+     * 节点标识，默认为主机名；转存文件只在本节点上存在，断点续传只处理本节点的任务
+     */
+    @Value("${rag.ingest.node-id:}")
+    private String node;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(spoolDir);
+        spoolDir = spoolDir.toAbsolutePath().normalize();
+        if (node == null || node.isBlank()) {
+            node = InetAddress.getLocalHost().getHostName();
+        }
+        log.info("上传转存目录: {}, 节点: {}", spoolDir, node);
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * 删除不在保留列表中的遗留转存文件
+     *
+     * @return 删除的文件数
+     */
+    public int removeOrphans(Set<Path> keep) throws IOException {
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDir, PREFIX + "*")) {
+            for (Path file : files) {
+                if (keep.contains(file.toAbsolutePath().normalize())) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(file);
+                    removed++;
+                } catch (IOException e) {
+                    log.warn("遗留转存文件删除失败: {}", file, e);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 创建一个空的转存文件
+     */
+    public Path create(String fileType) throws IOException {
+        return Files.createTempFile(spoolDir, PREFIX, "." + fileType);
+    }
+
+    /**
+     * 将数据流写入新的转存文件，超过上限时删除文件
+     *
+     * @return 待入库的文件，超过上限时返回 null
+     */
+    public IngestFile spool(InputStream input, String fileName, String fileType, long limit) throws IOException {
+        Path file = create(fileType);
+        boolean exceeded = false;
+        long total = 0;
+        try {
+            byte[] buffer = new byte[8192];
+            try (OutputStream output = Files.newOutputStream(file)) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    total += read;
+                    if (total > limit) {
+                        exceeded = true;
+                        break;
+                    }
+                    output.write(buffer, 0, read);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        if (exceeded) {
+            Files.deleteIfExists(file);
+            return null;
+        }
+        return new IngestFile(file, fileName, fileType, total);
+    }
+}
@@ -0,0 +1,259 @@
+package ai.tx.knowledge.center.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.common.clientenum.ConsistencyLevelEnum;
+import io.milvus.grpc.MutationResult;
+import io.milvus.grpc.QueryResults;
+import io.milvus.param.R;
+import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.QueryParam;
+import io.milvus.param.dml.UpsertParam;
+import io.milvus.response.QueryResultsWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.model.EmbeddingUtils;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 向量覆盖写入
+ * 修改已有片段的元数据（转移归属、补写分类）时按原ID整体替换：先完成向量化（按内容哈希命中向量缓存），
+ * 再用 Milvus upsert 一次替换。不会出现先删除、后写入之间片段从检索结果中消失，或删除后写入失败片段丢失的情况。
+ * 已从向量库读出原向量的片段直接写回原向量，不再向量化。
+ *
+ * <p>向量库不是 Milvus 时退回先删除后写入；按ID读取和分页读取片段只支持 Milvus
+ *
+ * @author tanxiong
+ */
+@Slf4j
+@Component
+public class VectorRewriter {
+
+    private static final Gson GSON = new Gson();
+
+    private static final Type METADATA_TYPE = new TypeToken<Map<String, Object>>() { }.getType();
+
+    /**
+     * 按ID读取时每次查询的ID数量，低于 Milvus 单次查询的结果上限
+     */
+    private static final int READ_BATCH_SIZE = 1000;
+
+    @Autowired
+    private VectorStore vectorStore;
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private BatchingStrategy batchingStrategy;
+
+    @Value("${spring.ai.vectorstore.milvus.databaseName:default}")
+    private String databaseName;
+
+    @Value("${spring.ai.vectorstore.milvus.collectionName:vector_store}")
+    private String collectionName;
+
+    @Value("${spring.ai.vectorstore.milvus.idFieldName:doc_id}")
+    private String idFieldName;
+
+    @Value("${spring.ai.vectorstore.milvus.contentFieldName:content}")
+    private String contentFieldName;
+
+    @Value("${spring.ai.vectorstore.milvus.metadataFieldName:metadata}")
+    private String metadataFieldName;
+
+    @Value("${spring.ai.vectorstore.milvus.embeddingFieldName:embedding}")
+    private String embeddingFieldName;
+
+    /**
+     * 向量库中的片段及其向量
+     *
+     * @param embedding 已存的向量，不存在时为 null
+     */
+    public record StoredVector(Document document, List<Float> embedding) {
+    }
+
+    /**
+     * 按片段ID从向量库读取原文和元数据，ID分批查询
+     *
+     * @return 片段ID → 片段，向量库中不存在的ID不返回
+     */
+    public Map<String, Document> read(Collection<String> ids) {
+        Map<String, Document> documents = new HashMap<>();
+        read(ids, false).forEach((id, stored) -> documents.put(id, stored.document()));
+        return documents;
+    }
+
+    /**
+     * 按片段ID从向量库读取原文、元数据和已存的向量
+     *
+     * @return 片段ID → 片段，向量库中不存在的ID不返回
+     */
+    public Map<String, StoredVector> readStored(Collection<String> ids) {
+        return read(ids, true);
+    }
+
+    /**
+     * 按主键顺序分页读取片段的元数据，每页以上一页最大的片段ID为起点，直到没有结果
+     * Milvus 带 limit 的查询按主键升序返回，不受 offset + limit 的结果窗口上限限制
+     *
+     * @param expr     Milvus 过滤表达式，为空时读取全部片段
+     * @param pageSize 每页的片段数
+     * @param consumer 每页的片段ID → 元数据
+     */
+    public void scanMetadata(String expr, int pageSize, Consumer<Map<String, Map<String, Object>>> consumer) {
+        MilvusServiceClient client = milvusClient();
+        String cursor = "";
+        while (true) {
+            String cursorExpr = idFieldName + " > " + GSON.toJson(cursor);
+            R<QueryResults> response = client.query(QueryParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(collectionName)
+                    .withExpr(expr == null || expr.isEmpty() ? cursorExpr : "(" + expr + ") and " + cursorExpr)
+                    .withOutFields(List.of(idFieldName, metadataFieldName))
+                    .withLimit((long) pageSize)
+                    .withConsistencyLevel(ConsistencyLevelEnum.STRONG)
+                    .build());
+            if (response.getException() != null) {
+                throw new RuntimeException("向量读取失败: " + response.getMessage(), response.getException());
+            }
+            Map<String, Map<String, Object>> page = new LinkedHashMap<>();
+            for (QueryResultsWrapper.RowRecord row : new QueryResultsWrapper(response.getData()).getRowRecords()) {
+                String id = String.valueOf(row.get(idFieldName));
+                page.put(id, metadata(row));
+                if (id.compareTo(cursor) > 0) {
+                    cursor = id;
+                }
+            }
+            if (page.isEmpty()) {
+                return;
+            }
+            consumer.accept(page);
+        }
+    }
+
+    private Map<String, StoredVector> read(Collection<String> ids, boolean withEmbedding) {
+        Map<String, StoredVector> documents = new HashMap<>();
+        if (ids.isEmpty()) {
+            return documents;
+        }
+        MilvusServiceClient client = milvusClient();
+        List<String> outFields = withEmbedding
+                ? List.of(idFieldName, contentFieldName, metadataFieldName, embeddingFieldName)
+                : List.of(idFieldName, contentFieldName, metadataFieldName);
+        List<String> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += READ_BATCH_SIZE) {
+            List<String> batch = idList.subList(from, Math.min(idList.size(), from + READ_BATCH_SIZE));
+            R<QueryResults> response = client.query(QueryParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(collectionName)
+                    .withExpr(idFieldName + " in " + GSON.toJson(batch))
+                    .withOutFields(outFields)
+                    // 刚覆盖写入的片段也要读到
+                    .withConsistencyLevel(ConsistencyLevelEnum.STRONG)
+                    .build());
+            if (response.getException() != null) {
+                throw new RuntimeException("向量读取失败: " + response.getMessage(), response.getException());
+            }
+            for (QueryResultsWrapper.RowRecord row : new QueryResultsWrapper(response.getData()).getRowRecords()) {
+                String id = String.valueOf(row.get(idFieldName));
+                Document document = new Document(id, String.valueOf(row.get(contentFieldName)), metadata(row));
+                List<Float> embedding = null;
+                if (withEmbedding && row.get(embeddingFieldName) instanceof List<?> values && !values.isEmpty()) {
+                    embedding = values.stream().map(value -> ((Number) value).floatValue()).toList();
+                }
+                documents.put(id, new StoredVector(document, embedding));
+            }
+        }
+        return documents;
+    }
+
+    private Map<String, Object> metadata(QueryResultsWrapper.RowRecord row) {
+        Map<String, Object> metadata = GSON.fromJson((JsonElement) row.get(metadataFieldName), METADATA_TYPE);
+        return metadata != null ? metadata : new HashMap<>();
+    }
+
+    private MilvusServiceClient milvusClient() {
+        if (!(vectorStore.getNativeClient().orElse(null) instanceof MilvusServiceClient client)) {
+            throw new IllegalStateException("向量库不是 Milvus，不支持直接读取片段");
+        }
+        return client;
+    }
+
+    /**
+     * 按片段ID覆盖写入，失败时向量库中仍是原来的片段
+     */
+    public void rewrite(List<Document> documents) {
+        rewrite(documents, Map.of());
+    }
+
+    /**
+     * 按片段ID覆盖写入，有原向量的片段写回原向量，其余片段向量化后写入
+     *
+     * @param stored 片段ID → 从向量库读出的原向量
+     */
+    public void rewrite(List<Document> documents, Map<String, List<Float>> stored) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        if (!(vectorStore.getNativeClient().orElse(null) instanceof MilvusServiceClient client)) {
+            vectorStore.delete(documents.stream().map(Document::getId).toList());
+            vectorStore.add(documents);
+            return;
+        }
+
+        List<Document> unembedded = documents.stream().filter(document -> stored.get(document.getId()) == null).toList();
+        Map<String, List<Float>> embedded = new HashMap<>();
+        if (!unembedded.isEmpty()) {
+            List<float[]> embeddings = embeddingModel.embed(unembedded, EmbeddingOptionsBuilder.builder().build(), batchingStrategy);
+            for (int i = 0; i < unembedded.size(); i++) {
+                embedded.put(unembedded.get(i).getId(), EmbeddingUtils.toList(embeddings.get(i)));
+            }
+        }
+        List<String> ids = new ArrayList<>(documents.size());
+        List<String> contents = new ArrayList<>(documents.size());
+        List<JsonObject> metadata = new ArrayList<>(documents.size());
+        List<List<Float>> vectors = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            ids.add(document.getId());
+            contents.add(document.getText());
+            // 与 MilvusVectorStore 写入时的元数据格式一致
+            metadata.add(GSON.fromJson(GSON.toJson(document.getMetadata()), JsonObject.class));
+            vectors.add(stored.get(document.getId()) != null ? stored.get(document.getId()) : embedded.get(document.getId()));
+        }
+        List<InsertParam.Field> fields = List.of(
+                new InsertParam.Field(idFieldName, ids),
+                new InsertParam.Field(contentFieldName, contents),
+                new InsertParam.Field(metadataFieldName, metadata),
+                new InsertParam.Field(embeddingFieldName, vectors));
+
+        R<MutationResult> response = client.upsert(UpsertParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withFields(fields)
+                .build());
+        if (response.getException() != null) {
+            throw new RuntimeException("向量覆盖写入失败: " + response.getMessage(), response.getException());
+        }
+        log.debug("向量覆盖写入: {} 个片段, 其中重新向量化 {} 个", documents.size(), unembedded.size());
+    }
+}
@@ -0,0 +1,111 @@
+package ai.tx.knowledge.center.service.chunking;
+
+import java.text.BreakIterator;
+import java.util.Locale;
+
+/**
+ * 基于 {@link BreakIterator} 的句子切分引擎
+ * 按空行缓冲段落，交给JDK的句子边界规则切分，可识别中文标点、缩写、小数等情况。
+ * 段落过长时只提交已确定的句子，超长的单句按缓冲上限截断，保证内存有界。
+ *
+ * @author tanxiong
+ */
+public class BreakIteratorSentenceSegmenter implements SentenceSegmenter {
+
+    /**
+     * 段落缓冲上限
+     */
+    private static final int MAX_BUFFERED = 65536;
+
+    private final BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.ROOT);
+    private final SentenceBuffer output;
+
+    private final StringBuilder paragraph = new StringBuilder();
+    /**
+     * paragraph[0] 对应的偏移量
+     */
+    private int paragraphBase = 0;
+    private int nextFlush = MAX_BUFFERED;
+    private boolean prevNewline = false;
+
+    public BreakIteratorSentenceSegmenter(SentenceBuffer output) {
+        this.output = output;
+    }
+
+    @Override
+    public void append(char c) {
+        paragraph.append(c);
+        if (c == '\n') {
+            if (prevNewline) {
+                flush(true);
+            }
+            prevNewline = true;
+            return;
+        }
+        prevNewline = false;
+        if (paragraph.length() >= nextFlush) {
+            flush(paragraph.length() >= MAX_BUFFERED * 2);
+        }
+    }
+
+    @Override
+    public void finish() {
+        flush(true);
+    }
+
+    @Override
+    public int pendingStart() {
+        return -1;
+    }
+
+    @Override
+    public int pendingMinEnd() {
+        return -1;
+    }
+
+    @Override
+    public int retainFrom() {
+        return paragraphBase;
+    }
+
+    /**
+     * 切分缓冲的段落
+     *
+     * @param complete 段落已结束或需强制提交；否则保留最后一个可能未结束的句子
+     */
+    private void flush(boolean complete) {
+        if (paragraph.isEmpty()) {
+            nextFlush = MAX_BUFFERED;
+            return;
+        }
+        iterator.setText(paragraph.toString());
+        int start = iterator.first();
+        int end = iterator.next();
+        int consumed = 0;
+        while (end != BreakIterator.DONE) {
+            int following = iterator.next();
+            if (following == BreakIterator.DONE && !complete && start > 0) {
+                break;
+            }
+            emit(start, end);
+            consumed = end;
+            start = end;
+            end = following;
+        }
+        paragraph.delete(0, consumed);
+        paragraphBase += consumed;
+        nextFlush = Math.max(MAX_BUFFERED, paragraph.length() + MAX_BUFFERED / 2);
+    }
+
+    private void emit(int start, int end) {
+        while (start < end && Character.isWhitespace(paragraph.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(paragraph.charAt(end - 1))) {
+            end--;
+        }
+        if (start < end) {
+            output.add(paragraphBase + start, paragraphBase + end);
+        }
+    }
+}
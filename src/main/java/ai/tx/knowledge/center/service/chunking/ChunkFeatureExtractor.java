@@ -0,0 +1,236 @@
+package ai.tx.knowledge.center.service.chunking;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * chunk结构特征提取
+ * 一次扫描同时完成结构类型识别和语义密度计算，结果与原先基于正则的判断规则一致：
+ * <ul>
+ *     <li>heading：{@code ^#+\s+.+} 或 {@code ^[A-Z\s]+:.*}</li>
+ *     <li>list：{@code ^\s*[-*+]\s+.*} 或 {@code ^\s*\d+\.\s+.*}</li>
+ *     <li>table：含 "|" 且多于一行</li>
+ *     <li>code：含 "```" 或 {@code .*\{.*\}.*}</li>
+ *     <li>其余为 paragraph</li>
+ * </ul>
+ * 以上均为整段匹配，"." 不匹配换行符。语义密度为按空白切分后长度大于1且不是停用词的词所占比例。
+ *
+ * <p>停用词按语言分组，可追加；实例创建后只读，可在多线程间共享。
+ *
+ * @author tanxiong
+ */
+public class ChunkFeatureExtractor {
+
+    /**
+     * 内置停用词
+     */
+    public static final Map<String, List<String>> DEFAULT_STOP_WORDS = Map.of(
+            "zh", List.of("的", "是", "在", "有", "和", "了", "不", "一", "这", "那", "我", "你", "他"),
+            "en", List.of("the", "and", "is", "in", "to", "of", "a", "that", "it", "with", "for")
+    );
+
+    private final Set<String> stopWords = new HashSet<>();
+
+    /**
+     * 最长停用词的长度，更长的词无需查表
+     */
+    private final int maxStopWordLength;
+
+    public ChunkFeatureExtractor() {
+        this(List.of());
+    }
+
+    /**
+     * @param extraStopWords 追加的停用词（小写）
+     */
+    public ChunkFeatureExtractor(Collection<String> extraStopWords) {
+        DEFAULT_STOP_WORDS.values().forEach(stopWords::addAll);
+        for (String word : extraStopWords) {
+            if (word != null && !word.isBlank()) {
+                stopWords.add(word.trim());
+            }
+        }
+        int maxLength = 0;
+        for (String word : stopWords) {
+            maxLength = Math.max(maxLength, word.length());
+        }
+        this.maxStopWordLength = maxLength;
+    }
+
+    /**
+     * 识别结构类型并计算语义密度，写入 structureType / semanticDensity 元数据
+     */
+    public void extract(String text, Map<String, Object> metadata) {
+        int length = text.length();
+
+        // 单次扫描收集的特征
+        int lastTerminator = -1;
+        boolean multiLine = false;
+        boolean hasPipe = false;
+        boolean hasFence = false;
+        int backticks = 0;
+        boolean braceOpened = false;
+        boolean bracePair = false;
+
+        int words = 0;
+        int contentWords = 0;
+        boolean leadingSpace = length > 0 && isSpace(text.charAt(0));
+        boolean anySpace = false;
+        int wordStart = -1;
+
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (i < length) {
+                if (isLineTerminator(c)) {
+                    lastTerminator = i;
+                }
+                if (c == '\n' && i < length - 1) {
+                    multiLine = true;
+                } else if (c == '\r' && i < length - 1 && text.charAt(i + 1) != '\n') {
+                    multiLine = true;
+                } else if (c == '|') {
+                    hasPipe = true;
+                } else if (c == '{') {
+                    braceOpened = true;
+                } else if (c == '}' && braceOpened) {
+                    bracePair = true;
+                }
+                backticks = c == '`' ? backticks + 1 : 0;
+                if (backticks >= 3) {
+                    hasFence = true;
+                }
+            }
+
+            if (isSpace(c)) {
+                if (i < length) {
+                    anySpace = true;
+                }
+                if (wordStart >= 0) {
+                    words++;
+                    if (isContentWord(text, wordStart, i)) {
+                        contentWords++;
+                    }
+                    wordStart = -1;
+                }
+            } else if (wordStart < 0) {
+                wordStart = i;
+            }
+        }
+
+        metadata.put("structureType", structureType(text, lastTerminator, multiLine, hasPipe, hasFence, bracePair));
+
+        // 与 split("\\s+") 的结果保持一致：以空白开头时有一个前导空串，不含空白时整段为一个词
+        int wordCount;
+        if (!anySpace) {
+            wordCount = 1;
+            contentWords = length > 0 && isContentWord(text, 0, length) ? 1 : 0;
+        } else {
+            wordCount = words > 0 && leadingSpace ? words + 1 : words;
+        }
+        double semanticDensity = wordCount > 0 ? (double) contentWords / wordCount : 0.0;
+        metadata.put("semanticDensity", Math.round(semanticDensity * 100.0) / 100.0);
+    }
+
+    private String structureType(String text, int lastTerminator, boolean multiLine,
+                                 boolean hasPipe, boolean hasFence, boolean bracePair) {
+        if (isHeading(text, lastTerminator)) {
+            return "heading";
+        }
+        if (isList(text, lastTerminator)) {
+            return "list";
+        }
+        if (hasPipe && multiLine) {
+            return "table";
+        }
+        if (hasFence || (bracePair && lastTerminator < 0)) {
+            return "code";
+        }
+        return "paragraph";
+    }
+
+    /**
+     * ^#+\s+.+ 或 ^[A-Z\s]+:.*
+     */
+    private boolean isHeading(String text, int lastTerminator) {
+        int length = text.length();
+        int hashes = 0;
+        while (hashes < length && text.charAt(hashes) == '#') {
+            hashes++;
+        }
+        if (hashes > 0 && spaceThenRest(text, hashes, lastTerminator)
+                && Math.max(hashes + 1, lastTerminator + 1) < length) {
+            return true;
+        }
+
+        int i = 0;
+        while (i < length && (isSpace(text.charAt(i)) || (text.charAt(i) >= 'A' && text.charAt(i) <= 'Z'))) {
+            i++;
+        }
+        return i > 0 && i < length && text.charAt(i) == ':' && lastTerminator < i;
+    }
+
+    /**
+     * ^\s*[-*+]\s+.* 或 ^\s*\d+\.\s+.*
+     */
+    private boolean isList(String text, int lastTerminator) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && isSpace(text.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return false;
+        }
+        char c = text.charAt(i);
+        if (c == '-' || c == '*' || c == '+') {
+            return spaceThenRest(text, i + 1, lastTerminator);
+        }
+        int digits = i;
+        while (digits < length && text.charAt(digits) >= '0' && text.charAt(digits) <= '9') {
+            digits++;
+        }
+        return digits > i && digits < length && text.charAt(digits) == '.'
+                && spaceThenRest(text, digits + 1, lastTerminator);
+    }
+
+    /**
+     * from 处以空白开始，且所有换行符都落在这段空白中（之后的内容不含换行符）
+     */
+    private boolean spaceThenRest(String text, int from, int lastTerminator) {
+        int length = text.length();
+        if (from >= length || !isSpace(text.charAt(from))) {
+            return false;
+        }
+        int firstNonSpace = from;
+        while (firstNonSpace < length && isSpace(text.charAt(firstNonSpace))) {
+            firstNonSpace++;
+        }
+        return lastTerminator < firstNonSpace;
+    }
+
+    private boolean isContentWord(String text, int start, int end) {
+        int length = end - start;
+        if (length > maxStopWordLength) {
+            return true;
+        }
+        String word = text.substring(start, end).toLowerCase();
+        return word.length() > 1 && !stopWords.contains(word);
+    }
+
+    /**
+     * 正则中的 \s
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * 正则中 "." 不匹配的行结束符
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
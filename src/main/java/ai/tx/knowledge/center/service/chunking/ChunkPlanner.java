@@ -0,0 +1,110 @@
+package ai.tx.knowledge.center.service.chunking;
+
+/**
+ * 分块规划器
+ * 在句子偏移量数组上执行贪心聚合 + 重叠窗口，重叠回退位置通过二分查找确定，
+ * 整体复杂度与句子数量成线性（每个chunk额外 O(log n)）。
+ * 大小按 {@link ChunkSizer} 计量，每个句子只计量一次。
+ *
+ * @author tanxiong
+ */
+public class ChunkPlanner {
+
+    /**
+     * 分块结果回调
+     */
+    @FunctionalInterface
+    public interface ChunkSink {
+
+        void accept(int startOffset, int endOffset);
+    }
+
+    private final int targetSize;
+    private final int maxSize;
+    private final int minSize;
+    private final int overlapSize;
+    private final ChunkSizer sizer;
+
+    public ChunkPlanner(int targetSize, int maxSize, int minSize, int overlapSize) {
+        this(targetSize, maxSize, minSize, overlapSize, ChunkSizer.CHARACTERS);
+    }
+
+    public ChunkPlanner(int targetSize, int maxSize, int minSize, int overlapSize, ChunkSizer sizer) {
+        this.targetSize = targetSize;
+        this.maxSize = maxSize;
+        this.minSize = minSize;
+        this.overlapSize = overlapSize;
+        this.sizer = sizer;
+    }
+
+    /**
+     * 规划整篇文本的chunk边界
+     *
+     * @param sentences 句子偏移量
+     * @param text      文本
+     * @param sink      按顺序接收每个chunk的起止偏移量
+     * @return chunk数量
+     */
+    public int plan(SentenceBuffer sentences, CharSequence text, ChunkSink sink) {
+        int textLength = text.length();
+        SentencePositions positions = new SentencePositions(sizer, sentences);
+        positions.update(text, 0);
+
+        int size = sentences.size();
+        int chunkCount = 0;
+        int currentIndex = 0;
+        while (currentIndex < size) {
+            int chunkStart = sentences.start(currentIndex);
+            int chunkEnd = chunkStart;
+            int startPosition = positions.start(currentIndex);
+            int endPosition = startPosition;
+            int sentenceCount = 0;
+
+            // 贪心聚合：在目标大小内尽可能多地包含句子
+            for (int i = currentIndex; i < size; i++) {
+                int candidateEnd = sentences.end(i);
+                int candidateSize = positions.end(i) - startPosition;
+
+                if (candidateSize > maxSize) {
+                    if (sentenceCount == 0) {
+                        // 单个句子过长，强制切分
+                        chunkEnd = Math.min(sizer.fit(text, chunkStart, candidateEnd, maxSize), textLength);
+                        endPosition = startPosition + maxSize;
+                    }
+                    break;
+                }
+
+                chunkEnd = candidateEnd;
+                endPosition = positions.end(i);
+                sentenceCount++;
+
+                if (candidateSize >= targetSize) {
+                    break;
+                }
+            }
+
+            // 确保chunk至少有最小大小（除非是最后一个chunk）
+            if (endPosition - startPosition < minSize) {
+                for (int i = currentIndex + sentenceCount; i < size; i++) {
+                    if (positions.end(i) - startPosition > maxSize) {
+                        break;
+                    }
+                    chunkEnd = sentences.end(i);
+                    endPosition = positions.end(i);
+                    sentenceCount++;
+                    if (endPosition - startPosition >= minSize) {
+                        break;
+                    }
+                }
+            }
+
+            sink.accept(chunkStart, chunkEnd);
+            chunkCount++;
+
+            // 计算下一个chunk的起始位置（考虑重叠）
+            int nextStart = Math.max(endPosition - overlapSize, startPosition + 1);
+            currentIndex = positions.firstStartAtLeast(currentIndex + 1, size, nextStart);
+        }
+        return chunkCount;
+    }
+}
@@ -0,0 +1,60 @@
+package ai.tx.knowledge.center.service.chunking;
+
+/**
+ * chunk大小的度量方式
+ * 切分时只对单个句子及句子间的空白计量，chunk大小为其包含的各部分之和；按字符计量时即为偏移量之差。
+ * 实现类需线程安全。
+ *
+ * @author tanxiong
+ */
+public interface ChunkSizer {
+
+    String UNIT_CHARS = "chars";
+    String UNIT_TOKENS = "tokens";
+
+    /**
+     * 按字符计量
+     */
+    ChunkSizer CHARACTERS = new ChunkSizer() {
+
+        @Override
+        public int measure(CharSequence text, int start, int end) {
+            return end - start;
+        }
+
+        @Override
+        public int fit(CharSequence text, int start, int end, int maxSize) {
+            return Math.min(start + maxSize, end);
+        }
+
+        @Override
+        public int maxSizePerChar() {
+            return 1;
+        }
+    };
+
+    /**
+     * text 中 [start, end) 的大小
+     */
+    int measure(CharSequence text, int start, int end);
+
+    /**
+     * [start, end) 中大小不超过 maxSize 的最长前缀的结束偏移量，至少包含一个字符
+     */
+    int fit(CharSequence text, int start, int end, int maxSize);
+
+    /**
+     * 单个字符大小的上限，用于在计量前排除不可能超限的文本
+     */
+    int maxSizePerChar();
+
+    /**
+     * 根据 rag.chunking.size-unit 创建：chars(字符)/tokens(token，使用内置的分词器)
+     */
+    static ChunkSizer create(String unit, String encoding) {
+        if (UNIT_TOKENS.equals(unit)) {
+            return TokenChunkSizer.of(encoding);
+        }
+        return CHARACTERS;
+    }
+}
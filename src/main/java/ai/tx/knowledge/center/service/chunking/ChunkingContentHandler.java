@@ -0,0 +1,101 @@
+package ai.tx.knowledge.center.service.chunking;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * 将Tika解析出的文本流式推入切分器的SAX处理器
+ * 文本按与 Tika ToTextContentHandler 相同的规则输出（characters 和 ignorableWhitespace，跳过 script/style），
+ * 先写入固定大小的缓冲区，缓冲区写满时整段推给 {@link StreamingChunker}，
+ * 解析过程中内存只保留缓冲区和切分窗口，与文档大小无关。非线程安全。
+ *
+ * @author tanxiong
+ */
+public class ChunkingContentHandler extends DefaultHandler {
+
+    /**
+     * 每次推给切分器的文本段长度
+     */
+    private static final int SEGMENT_SIZE = 8192;
+
+    private final StreamingChunker chunker;
+
+    private final char[] segment = new char[SEGMENT_SIZE];
+
+    private int length = 0;
+
+    /**
+     * 当前所在的 script/style 元素层数
+     */
+    private int skipDepth = 0;
+
+    public ChunkingContentHandler(StreamingChunker chunker) {
+        this.chunker = chunker;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        if (isSkipped(localName)) {
+            skipDepth++;
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (isSkipped(localName) && skipDepth > 0) {
+            skipDepth--;
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int len) {
+        if (skipDepth == 0) {
+            write(ch, start, len);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int len) {
+        characters(ch, start, len);
+    }
+
+    @Override
+    public void endDocument() {
+        flush();
+    }
+
+    /**
+     * 解析结束，推入剩余文本并输出最后的chunk
+     *
+     * @return 生成的chunk数量
+     */
+    public int finish() {
+        flush();
+        chunker.finish();
+        return chunker.getChunkCount();
+    }
+
+    private void write(char[] ch, int start, int len) {
+        while (len > 0) {
+            int n = Math.min(len, SEGMENT_SIZE - length);
+            System.arraycopy(ch, start, segment, length, n);
+            length += n;
+            start += n;
+            len -= n;
+            if (length == SEGMENT_SIZE) {
+                flush();
+            }
+        }
+    }
+
+    private void flush() {
+        if (length > 0) {
+            chunker.append(segment, 0, length);
+            length = 0;
+        }
+    }
+
+    private static boolean isSkipped(String localName) {
+        return "script".equals(localName) || "style".equals(localName);
+    }
+}
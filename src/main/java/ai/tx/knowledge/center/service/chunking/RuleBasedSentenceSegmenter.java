@@ -0,0 +1,141 @@
+package ai.tx.knowledge.center.service.chunking;
+
+/**
+ * 基于规则的句子切分引擎
+ * 单次扫描的状态机，句子之间由空白间隔分开：
+ * <ul>
+ *     <li>strict：标点(。！？：；.!?;)后跟空白、间隔中含空行，或中文句末标点(。！？；)后直接跟正文时为句子边界，
+ *     句末标点后紧跟的引号、括号等闭合符号以及连续的句末标点归属前一句</li>
+ *     <li>relaxed：主要标点(。！？.!?)后或间隔中含空行即为句子边界</li>
+ * </ul>
+ *
+ * @author tanxiong
+ */
+public class RuleBasedSentenceSegmenter implements SentenceSegmenter {
+
+    private static final String STRICT_PUNCTUATION = "。！？：；.!?;";
+    private static final String RELAXED_PUNCTUATION = "。！？.!?";
+    private static final String CJK_TERMINATORS = "。！？；";
+    private static final String CLOSING_MARKS = "”’」』）》】〕〉\"')]";
+
+    private final boolean strictMode;
+    private final SentenceBuffer output;
+
+    private char lastToken = 0;
+    private boolean hasToken = false;
+    /**
+     * 中文句末标点之后尚未遇到正文
+     */
+    private boolean cjkBreakPending = false;
+    private int position = 0;
+    private int gapStart = -1;
+    private boolean gapPrevNewline = false;
+    private int gapDoubleNewline = -1;
+    private int regionStart = 0;
+    private int regionFirst = -1;
+    private int regionLast = -1;
+    private boolean regionHasContent = false;
+
+    public RuleBasedSentenceSegmenter(boolean strictMode, SentenceBuffer output) {
+        this.strictMode = strictMode;
+        this.output = output;
+    }
+
+    @Override
+    public void append(char c) {
+        int current = position++;
+        if (isRegexSpace(c)) {
+            if (gapStart < 0) {
+                gapStart = current;
+            }
+            if (c == '\n') {
+                if (gapPrevNewline && gapDoubleNewline < 0) {
+                    gapDoubleNewline = current - 1;
+                }
+                gapPrevNewline = true;
+            } else {
+                gapPrevNewline = false;
+            }
+            return;
+        }
+
+        if (hasToken) {
+            boolean boundary;
+            if (strictMode) {
+                boolean cjkBoundary = cjkBreakPending
+                        && CLOSING_MARKS.indexOf(c) < 0 && CJK_TERMINATORS.indexOf(c) < 0;
+                boundary = cjkBoundary || (gapStart >= 0 && STRICT_PUNCTUATION.indexOf(lastToken) >= 0)
+                        || gapDoubleNewline >= 0;
+            } else {
+                boundary = RELAXED_PUNCTUATION.indexOf(lastToken) >= 0 || gapDoubleNewline >= 0;
+            }
+            if (boundary) {
+                // 区域结束位置只在区域没有非空白字符时使用，此时边界必然来自空行
+                closeRegion(gapDoubleNewline >= 0 ? gapDoubleNewline : current);
+                regionStart = current;
+            }
+        }
+        gapStart = -1;
+        gapPrevNewline = false;
+        gapDoubleNewline = -1;
+
+        if (strictMode) {
+            if (CJK_TERMINATORS.indexOf(c) >= 0) {
+                cjkBreakPending = true;
+            } else if (CLOSING_MARKS.indexOf(c) < 0) {
+                cjkBreakPending = false;
+            }
+        }
+        if (!Character.isWhitespace(c)) {
+            if (regionFirst < 0) {
+                regionFirst = current;
+            }
+            regionLast = current + 1;
+        }
+        if (c > ' ') {
+            regionHasContent = true;
+        }
+        lastToken = c;
+        hasToken = true;
+    }
+
+    @Override
+    public void finish() {
+        closeRegion(position);
+    }
+
+    @Override
+    public int pendingStart() {
+        return regionHasContent && regionFirst >= 0 ? regionFirst : -1;
+    }
+
+    @Override
+    public int pendingMinEnd() {
+        return regionLast;
+    }
+
+    @Override
+    public int retainFrom() {
+        return Math.min(regionStart, position);
+    }
+
+    /**
+     * 结束当前区域，区域中含有非空白内容时记为一个句子
+     */
+    private void closeRegion(int regionEnd) {
+        if (regionHasContent) {
+            if (regionFirst >= 0) {
+                output.add(regionFirst, regionLast);
+            } else {
+                output.add(regionEnd, regionEnd);
+            }
+        }
+        regionFirst = -1;
+        regionLast = -1;
+        regionHasContent = false;
+    }
+
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,91 @@
+package ai.tx.knowledge.center.service.chunking;
+
+import java.util.Arrays;
+
+/**
+ * 句子偏移量缓冲区
+ * 以两个并行的 int 数组保存句子的起止偏移量，避免为每个句子创建对象。
+ * 句子序号为绝对序号，流式切分时可通过 {@link #discardBefore(int)} 丢弃已用完的前部句子。
+ *
+ * @author tanxiong
+ */
+public class SentenceBuffer {
+
+    private int[] starts;
+    private int[] ends;
+    /**
+     * starts[0] 对应的绝对句子序号
+     */
+    private int base = 0;
+    private int stored = 0;
+
+    public SentenceBuffer() {
+        this(64);
+    }
+
+    public SentenceBuffer(int initialCapacity) {
+        this.starts = new int[Math.max(initialCapacity, 4)];
+        this.ends = new int[starts.length];
+    }
+
+    public void add(int start, int end) {
+        if (stored == starts.length) {
+            starts = Arrays.copyOf(starts, stored * 2);
+            ends = Arrays.copyOf(ends, stored * 2);
+        }
+        starts[stored] = start;
+        ends[stored] = end;
+        stored++;
+    }
+
+    /**
+     * 已记录的句子总数（含已丢弃的）
+     */
+    public int size() {
+        return base + stored;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int start(int index) {
+        return starts[index - base];
+    }
+
+    public int end(int index) {
+        return ends[index - base];
+    }
+
+    /**
+     * 二分查找 [fromIndex, toIndex) 中第一个起始偏移量不小于 offset 的句子序号，不存在时返回 toIndex。
+     * 句子按顺序写入，起始偏移量单调不减
+     */
+    public int firstStartAtLeast(int fromIndex, int toIndex, int offset) {
+        int low = fromIndex - base;
+        int high = toIndex - base;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low + base;
+    }
+
+    /**
+     * 丢弃序号小于 index 的句子，丢弃量不足一半时暂不移动数组以摊薄开销
+     */
+    public void discardBefore(int index) {
+        int drop = Math.min(index, size()) - base;
+        if (drop <= 0 || drop < stored / 2) {
+            return;
+        }
+        System.arraycopy(starts, drop, starts, 0, stored - drop);
+        System.arraycopy(ends, drop, ends, 0, stored - drop);
+        stored -= drop;
+        base += drop;
+    }
+}
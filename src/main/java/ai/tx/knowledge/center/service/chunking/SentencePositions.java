@@ -0,0 +1,81 @@
+package ai.tx.knowledge.center.service.chunking;
+
+/**
+ * 句子在计量单位下的位置
+ * 每个句子的起点为前一句终点加上两句之间空白的大小，终点为起点加上句子本身的大小，
+ * 两个位置之差即为按 {@link ChunkSizer} 计量的chunk大小。按字符计量时位置就是偏移量，直接使用句子缓冲区。
+ *
+ * @author tanxiong
+ */
+class SentencePositions {
+
+    private final ChunkSizer sizer;
+    private final SentenceBuffer sentences;
+    private final SentenceBuffer positions;
+
+    /**
+     * 最后一个已计量句子的终点偏移量及其位置
+     */
+    private int lastEnd = 0;
+    private int lastEndPosition = 0;
+
+    SentencePositions(ChunkSizer sizer, SentenceBuffer sentences) {
+        this.sizer = sizer;
+        this.sentences = sentences;
+        this.positions = sizer == ChunkSizer.CHARACTERS ? sentences : new SentenceBuffer();
+    }
+
+    /**
+     * 计量新增的句子
+     *
+     * @param text     文本，text[0] 对应偏移量 textBase，需包含新增句子及其前面的空白
+     * @param textBase text 起点的偏移量
+     */
+    void update(CharSequence text, int textBase) {
+        if (positions == sentences) {
+            return;
+        }
+        for (int i = positions.size(); i < sentences.size(); i++) {
+            // 被强制切分后跳过的超长句子，前部文本可能已回收，只计量仍在的部分
+            int from = Math.max(lastEnd, textBase) - textBase;
+            int start = Math.max(sentences.start(i), textBase) - textBase;
+            int end = Math.max(sentences.end(i), textBase) - textBase;
+            int startPosition = lastEndPosition + sizer.measure(text, from, start);
+            int endPosition = startPosition + sizer.measure(text, start, end);
+            positions.add(startPosition, endPosition);
+            lastEnd = sentences.end(i);
+            lastEndPosition = endPosition;
+        }
+    }
+
+    int start(int index) {
+        return positions.start(index);
+    }
+
+    int end(int index) {
+        return positions.end(index);
+    }
+
+    /**
+     * 已计量句子之后任意偏移量的位置
+     */
+    int positionOf(CharSequence text, int textBase, int offset) {
+        if (positions == sentences) {
+            return offset;
+        }
+        return lastEndPosition + sizer.measure(text, Math.max(lastEnd, textBase) - textBase, offset - textBase);
+    }
+
+    /**
+     * 二分查找 [fromIndex, toIndex) 中第一个起点位置不小于 position 的句子序号
+     */
+    int firstStartAtLeast(int fromIndex, int toIndex, int position) {
+        return positions.firstStartAtLeast(fromIndex, toIndex, position);
+    }
+
+    void discardBefore(int index) {
+        if (positions != sentences) {
+            positions.discardBefore(index);
+        }
+    }
+}
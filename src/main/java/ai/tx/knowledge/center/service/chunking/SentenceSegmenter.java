@@ -0,0 +1,64 @@
+package ai.tx.knowledge.center.service.chunking;
+
+/**
+ * 句子切分引擎
+ * 逐字符推入标准化后的文本，识别出的句子偏移量（已去除首尾空白）写入 {@link SentenceBuffer}。
+ * 实现类非线程安全，每篇文档使用独立实例。
+ *
+ * @author tanxiong
+ */
+public interface SentenceSegmenter {
+
+    String MODE_STRICT = "strict";
+    String MODE_RELAXED = "relaxed";
+    String MODE_BREAK_ITERATOR = "break-iterator";
+
+    /**
+     * 推入一个字符，偏移量从0开始依次递增
+     */
+    void append(char c);
+
+    /**
+     * 输入结束，输出最后一个句子
+     */
+    void finish();
+
+    /**
+     * 尚未结束、但已确定会成为下一个句子的起点，未知时返回 -1
+     */
+    int pendingStart();
+
+    /**
+     * 尚未结束的下一个句子已知的最小终点，仅在 {@link #pendingStart()} 有效时有意义
+     */
+    int pendingMinEnd();
+
+    /**
+     * 后续输出的句子不会早于该偏移量，之前的文本可以回收
+     */
+    int retainFrom();
+
+    /**
+     * 根据 rag.chunking.sentence-boundary-mode 创建切分引擎：
+     * strict(严格，兼容中文标点)/relaxed(宽松)/break-iterator(基于 java.text.BreakIterator)
+     */
+    static SentenceSegmenter create(String mode, SentenceBuffer output) {
+        if (MODE_BREAK_ITERATOR.equals(mode)) {
+            return new BreakIteratorSentenceSegmenter(output);
+        }
+        return new RuleBasedSentenceSegmenter(MODE_STRICT.equals(mode), output);
+    }
+
+    /**
+     * 切分整段文本
+     */
+    static SentenceBuffer segment(CharSequence text, String mode) {
+        SentenceBuffer sentences = new SentenceBuffer(Math.max(16, text.length() / 64));
+        SentenceSegmenter segmenter = create(mode, sentences);
+        for (int i = 0, length = text.length(); i < length; i++) {
+            segmenter.append(text.charAt(i));
+        }
+        segmenter.finish();
+        return sentences;
+    }
+}
@@ -0,0 +1,328 @@
+package ai.tx.knowledge.center.service.chunking;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 流式切分器
+ * 边读取边完成文本标准化、句子切分和智能分块，切分结果与整篇文档一次性切分完全一致，
+ * 但内存中只保留当前chunk加重叠窗口的文本，不再需要整篇文档的字符串。
+ *
+ * <p>用法：多次调用 {@link #append} 推入原始文本，最后调用 {@link #finish}，
+ * 每个确定下来的chunk会立即回调 {@link ChunkConsumer}。非线程安全。
+ *
+ * @author tanxiong
+ */
+public class StreamingChunker {
+
+    /**
+     * chunk回调
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+
+        /**
+         * @param chunkIndex  chunk序号，从0开始
+         * @param startOffset chunk在标准化文本中的起始偏移量
+         * @param endOffset   chunk在标准化文本中的结束偏移量
+         * @param text        chunk文本
+         */
+        void accept(int chunkIndex, int startOffset, int endOffset, String text);
+    }
+
+    /**
+     * 窗口前部可回收文本超过该长度时才压缩，摊薄拷贝开销
+     */
+    private static final int COMPACT_THRESHOLD = 8192;
+
+    private final int targetSize;
+    private final int maxSize;
+    private final int minSize;
+    private final int overlapSize;
+    private final ChunkSizer sizer;
+    private final ChunkConsumer consumer;
+
+    /**
+     * 文本标准化，标准化后的字符逐个写入窗口
+     */
+    private final TextNormalizer normalizer = new TextNormalizer(this::accept);
+
+    // ------------------------- 文本窗口 -------------------------
+
+    /**
+     * 标准化后的文本窗口，window[0] 对应偏移量 windowBase
+     */
+    private final StringBuilder window = new StringBuilder();
+    private int windowBase = 0;
+    /**
+     * 已输出的标准化文本总长度
+     */
+    private int totalLength = 0;
+
+    // ------------------------- 句子切分 -------------------------
+
+    private final SentenceBuffer sentences = new SentenceBuffer();
+    private final SentenceSegmenter segmenter;
+    private final SentencePositions positions;
+
+    // ------------------------- 分块状态 -------------------------
+
+    private int currentIndex = 0;
+    private int chunkIndex = 0;
+    private boolean finished = false;
+    /**
+     * 文档大小已达到最小chunk大小，不再作为短文档整体输出
+     */
+    private boolean longDocument = false;
+
+    public StreamingChunker(int targetSize, int maxSize, int minSize, int overlapSize,
+                            String sentenceBoundaryMode, ChunkConsumer consumer) {
+        this(targetSize, maxSize, minSize, overlapSize, sentenceBoundaryMode, ChunkSizer.CHARACTERS, consumer);
+    }
+
+    public StreamingChunker(int targetSize, int maxSize, int minSize, int overlapSize,
+                            String sentenceBoundaryMode, ChunkSizer sizer, ChunkConsumer consumer) {
+        this.targetSize = targetSize;
+        this.maxSize = maxSize;
+        this.minSize = minSize;
+        this.overlapSize = overlapSize;
+        this.sizer = sizer;
+        this.consumer = consumer;
+        this.segmenter = SentenceSegmenter.create(sentenceBoundaryMode, sentences);
+        this.positions = new SentencePositions(sizer, sentences);
+    }
+
+    /**
+     * 读取全部内容并完成切分
+     *
+     * @return 生成的chunk数量
+     */
+    public int consume(Reader reader) throws IOException {
+        char[] buffer = new char[COMPACT_THRESHOLD];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            append(buffer, 0, read);
+        }
+        finish();
+        return chunkIndex;
+    }
+
+    /**
+     * 推入一段原始文本
+     */
+    public void append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            normalizer.append(text.charAt(i));
+        }
+        afterAppend();
+    }
+
+    /**
+     * 推入一段原始文本
+     */
+    public void append(char[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            normalizer.append(buffer[i]);
+        }
+        afterAppend();
+    }
+
+    /**
+     * 输入结束，输出剩余的chunk
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        normalizer.finish();
+        segmenter.finish();
+
+        if (normalizer.isRawBlank()) {
+            return;
+        }
+        if (!isLongDocument()) {
+            // 短文档直接作为一个chunk
+            consumer.accept(chunkIndex++, 0, totalLength, window.toString());
+            return;
+        }
+        planChunks(true);
+    }
+
+    /**
+     * 已生成的chunk数量
+     */
+    public int getChunkCount() {
+        return chunkIndex;
+    }
+
+    private void afterAppend() {
+        planChunks(false);
+        compact();
+    }
+
+    private void accept(char c) {
+        window.append(c);
+        segmenter.append(c);
+        totalLength++;
+    }
+
+    // ------------------------- 分块 -------------------------
+
+    /**
+     * 贪心聚合 + 重叠窗口，只输出已能完全确定边界的chunk
+     */
+    private void planChunks(boolean eof) {
+        while (true) {
+            positions.update(window, windowBase);
+            int closed = sentences.size();
+            // 未结束的句子已确定存在时，其起点和已知的最小终点可用于提前判断强制切分
+            int pendingStart = eof ? -1 : segmenter.pendingStart();
+            int pendingMinEnd = segmenter.pendingMinEnd();
+            int chunkStart;
+            int startPosition;
+            if (currentIndex < closed) {
+                chunkStart = sentences.start(currentIndex);
+                startPosition = positions.start(currentIndex);
+            } else if (currentIndex == closed && pendingStart >= 0) {
+                chunkStart = pendingStart;
+                startPosition = positions.positionOf(window, windowBase, pendingStart);
+            } else {
+                return;
+            }
+            if (!eof && !isLongDocument()) {
+                // 是否为短文档尚未确定
+                return;
+            }
+
+            int chunkEnd = chunkStart;
+            int endPosition = startPosition;
+            int sentenceCount = 0;
+
+            // 贪心聚合：在目标大小内尽可能多地包含句子
+            for (int i = currentIndex; ; i++) {
+                int candidateEnd;
+                long candidateSize;
+                if (i < closed) {
+                    candidateEnd = sentences.end(i);
+                    candidateSize = positions.end(i) - startPosition;
+                } else if (eof) {
+                    break;
+                } else if (i == closed && pendingStart >= 0 && pendingTooLong(chunkStart, startPosition, pendingMinEnd)) {
+                    candidateEnd = pendingMinEnd;
+                    candidateSize = Long.MAX_VALUE;
+                } else {
+                    return;
+                }
+
+                if (candidateSize > maxSize) {
+                    if (sentenceCount == 0) {
+                        // 单个句子过长，强制切分
+                        chunkEnd = sizer.fit(window, chunkStart - windowBase, candidateEnd - windowBase, maxSize) + windowBase;
+                        endPosition = startPosition + maxSize;
+                    }
+                    break;
+                }
+
+                chunkEnd = candidateEnd;
+                endPosition = positions.end(i);
+                sentenceCount++;
+
+                if (candidateSize >= targetSize) {
+                    break;
+                }
+            }
+
+            // 确保chunk至少有最小大小（除非是最后一个chunk）
+            if (endPosition - startPosition < minSize) {
+                int next = currentIndex + sentenceCount;
+                boolean hasMore;
+                if (next < closed) {
+                    hasMore = true;
+                } else if (eof) {
+                    hasMore = false;
+                } else if (next == closed && pendingStart >= 0) {
+                    hasMore = true;
+                } else {
+                    return;
+                }
+                if (hasMore) {
+                    for (int i = next; ; i++) {
+                        if (i >= closed) {
+                            if (eof || (i == closed && pendingStart >= 0
+                                    && pendingTooLong(chunkStart, startPosition, pendingMinEnd))) {
+                                break;
+                            }
+                            return;
+                        }
+                        if (positions.end(i) - startPosition <= maxSize) {
+                            chunkEnd = sentences.end(i);
+                            endPosition = positions.end(i);
+                            sentenceCount++;
+                            if (endPosition - startPosition >= minSize) {
+                                break;
+                            }
+                        } else {
+                            break;
+                        }
+                    }
+                }
+            }
+
+            consumer.accept(chunkIndex++, chunkStart, chunkEnd,
+                    window.substring(chunkStart - windowBase, chunkEnd - windowBase));
+
+            // 计算下一个chunk的起始位置（考虑重叠）
+            if (currentIndex == closed) {
+                // 未结束的超长句子已被强制切分，跳过其剩余部分
+                currentIndex = closed + 1;
+            } else {
+                int nextStart = Math.max(endPosition - overlapSize, startPosition + 1);
+                currentIndex = positions.firstStartAtLeast(currentIndex + 1, closed, nextStart);
+            }
+        }
+    }
+
+    /**
+     * 未结束的句子从chunk起点算起已超过最大大小
+     */
+    private boolean pendingTooLong(int chunkStart, int startPosition, int pendingMinEnd) {
+        if ((long) (pendingMinEnd - chunkStart) * sizer.maxSizePerChar() <= maxSize) {
+            return false;
+        }
+        return positions.positionOf(window, windowBase, pendingMinEnd) - startPosition > maxSize;
+    }
+
+    /**
+     * 文档大小是否已达到最小chunk大小；未达到时窗口不压缩，保留全部文本
+     */
+    private boolean isLongDocument() {
+        if (!longDocument && (long) totalLength * sizer.maxSizePerChar() >= minSize) {
+            longDocument = sizer.measure(window, 0, window.length()) >= minSize;
+        }
+        return longDocument;
+    }
+
+    /**
+     * 丢弃已不再需要的文本和句子
+     */
+    private void compact() {
+        int closed = sentences.size();
+        int keepFrom;
+        if (currentIndex < closed) {
+            keepFrom = sentences.start(currentIndex);
+        } else if (currentIndex == closed) {
+            keepFrom = segmenter.retainFrom();
+        } else {
+            keepFrom = totalLength;
+        }
+        sentences.discardBefore(currentIndex);
+        positions.discardBefore(currentIndex);
+
+        int dropChars = keepFrom - windowBase;
+        if (dropChars > COMPACT_THRESHOLD && dropChars >= window.length() / 2 && isLongDocument()) {
+            window.delete(0, dropChars);
+            windowBase = keepFrom;
+        }
+    }
+}
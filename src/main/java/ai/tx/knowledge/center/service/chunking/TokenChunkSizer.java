@@ -0,0 +1,77 @@
+package ai.tx.knowledge.center.service.chunking;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按token计量chunk大小
+ * 使用 jtokkit 内置的BPE词表在本地分词，词表在首次使用时加载，同一编码的实例全局共享。
+ * 特殊token（如 &lt;|endoftext|&gt;）按普通文本计数。
+ *
+ * @author tanxiong
+ */
+public class TokenChunkSizer implements ChunkSizer {
+
+    private static final EncodingRegistry REGISTRY = Encodings.newLazyEncodingRegistry();
+
+    private static final Map<String, TokenChunkSizer> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Encoding encoding;
+
+    private TokenChunkSizer(Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * @param encodingName 编码名称，如 cl100k_base、o200k_base
+     */
+    public static TokenChunkSizer of(String encodingName) {
+        return INSTANCES.computeIfAbsent(encodingName, name -> new TokenChunkSizer(REGISTRY.getEncoding(name)
+                .orElseThrow(() -> new IllegalArgumentException("不支持的分词编码: " + name))));
+    }
+
+    public int countTokens(CharSequence text) {
+        return encoding.countTokensOrdinary(text.toString());
+    }
+
+    @Override
+    public int measure(CharSequence text, int start, int end) {
+        return start < end ? countTokens(text.subSequence(start, end)) : 0;
+    }
+
+    /**
+     * 二分查找满足大小的最长前缀，不拆开代理对
+     */
+    @Override
+    public int fit(CharSequence text, int start, int end, int maxSize) {
+        if (measure(text, start, end) <= maxSize) {
+            return end;
+        }
+        int low = start + 1;
+        int high = end - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (measure(text, start, mid) <= maxSize) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (low > start + 1 && low < end && Character.isHighSurrogate(text.charAt(low - 1))) {
+            low--;
+        }
+        return low;
+    }
+
+    /**
+     * 字节级BPE的token数不超过UTF-8字节数，单个char最多对应3个字节
+     */
+    @Override
+    public int maxSizePerChar() {
+        return 3;
+    }
+}
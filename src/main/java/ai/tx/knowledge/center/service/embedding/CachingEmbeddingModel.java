@@ -0,0 +1,169 @@
+package ai.tx.knowledge.center.service.embedding;
+
+import ai.tx.knowledge.center.common.HashUtils;
+import ai.tx.knowledge.center.service.chunking.TextNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 带持久化缓存的向量模型
+ * 包装实际的向量模型，按片段内容的SHA-256缓存向量：入库时相同内容（免责声明、页眉、法律条款等）
+ * 只调用一次向量化接口，缓存文件在重启后继续有效。
+ *
+ * <p>片段元数据中已有 contentHash 时直接作为缓存键，否则按文本内容计算。
+ *
+ * <p>向量库检索时按查询文本调用 {@link #embed(String)}，这类调用走内存中的 {@link QueryEmbeddingCache}，
+ * 检索接口和问答的重复提问不再调用向量化接口。两种缓存可以分别关闭，关闭的一方直接调用实际的向量模型。
+ *
+ * @author tanxiong
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private static final String CONTENT_HASH_KEY = "contentHash";
+
+    private final EmbeddingModel delegate;
+    private final MappedEmbeddingStore store;
+    private final QueryEmbeddingCache queryCache;
+
+    /**
+     * @param store      片段向量缓存，为 null 时不缓存片段向量
+     * @param queryCache 查询向量缓存，为 null 时不缓存查询向量
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, MappedEmbeddingStore store, QueryEmbeddingCache queryCache) {
+        this.delegate = delegate;
+        this.store = store;
+        this.queryCache = queryCache;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    /**
+     * 向量库按查询文本检索时调用，查询先标准化空白再向量化和缓存
+     */
+    @Override
+    public float[] embed(String text) {
+        if (queryCache == null) {
+            return delegate.embed(text);
+        }
+        return queryCache.get(TextNormalizer.normalize(text), delegate::embed);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        if (store == null) {
+            return delegate.embed(document);
+        }
+        byte[] key = cacheKey(document);
+        float[] cached = store.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        float[] vector = delegate.embed(document);
+        store.put(key, vector);
+        return vector;
+    }
+
+    /**
+     * 向量库批量写入时调用，只把未命中缓存的片段交给实际的向量模型，
+     * 同一批次中内容相同的片段也只向量化一次
+     */
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        if (store == null) {
+            return delegate.embed(documents, options, batchingStrategy);
+        }
+        float[][] vectors = new float[documents.size()][];
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        Map<String, byte[]> missingKeys = new LinkedHashMap<>();
+        List<Document> toEmbed = new ArrayList<>();
+
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            byte[] key = cacheKey(document);
+            String hex = HexFormat.of().formatHex(key);
+            List<Integer> positions = missing.get(hex);
+            if (positions != null) {
+                positions.add(i);
+                continue;
+            }
+            float[] cached = store.get(key);
+            if (cached != null) {
+                vectors[i] = cached;
+                continue;
+            }
+            positions = new ArrayList<>(1);
+            positions.add(i);
+            missing.put(hex, positions);
+            missingKeys.put(hex, key);
+            toEmbed.add(document);
+        }
+
+        if (!toEmbed.isEmpty()) {
+            List<float[]> embedded = delegate.embed(toEmbed, options, batchingStrategy);
+            int index = 0;
+            for (Map.Entry<String, List<Integer>> entry : missing.entrySet()) {
+                float[] vector = embedded.get(index++);
+                store.put(missingKeys.get(entry.getKey()), vector);
+                for (int position : entry.getValue()) {
+                    vectors[position] = vector;
+                }
+            }
+        }
+        log.debug("向量缓存: 本批 {} 个片段, 调用模型 {} 个", documents.size(), toEmbed.size());
+        return List.of(vectors);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (store != null) {
+            stats.putAll(store.getStats());
+        }
+        if (queryCache != null) {
+            stats.put("query", queryCache.getStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private byte[] cacheKey(Document document) {
+        Object contentHash = document.getMetadata().get(CONTENT_HASH_KEY);
+        if (contentHash instanceof String hex && hex.length() == 64) {
+            try {
+                return HexFormat.of().parseHex(hex);
+            } catch (IllegalArgumentException e) {
+                // 非十六进制格式，按文本内容计算
+            }
+        }
+        return HashUtils.sha256(document.getText() != null ? document.getText() : "");
+    }
+}
@@ -0,0 +1,286 @@
+package ai.tx.knowledge.center.service.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的向量存储
+ * 文件按组相联方式组织：键（32字节SHA-256）决定所在的桶，每个桶固定 {@link #WAYS} 个槽位，
+ * 桶满时淘汰最久未访问的槽位，文件大小在创建时即已确定。
+ *
+ * <p>槽位布局：键(32) + 访问时间戳(8) + 向量CRC32(4) + 保留(4) + 向量(维度 * 4)。
+ * 写入时先清除时间戳，再写向量和键，最后写时间戳，读取时校验CRC，
+ * 进程中途退出留下的半写槽位只会被当作未命中。
+ *
+ * <p>线程安全：按桶分段加锁，不同桶的读写互不阻塞。
+ *
+ * @author tanxiong
+ */
+@Slf4j
+public class MappedEmbeddingStore implements Closeable {
+
+    private static final int MAGIC = 0x4B43454D;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int KEY_SIZE = 32;
+    private static final int SLOT_META_SIZE = KEY_SIZE + 16;
+    private static final int WAYS = 8;
+    private static final int LOCK_STRIPES = 64;
+    /**
+     * 单个映射段的最大字节数，MappedByteBuffer 的容量不能超过 Integer.MAX_VALUE
+     */
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final Path path;
+    private final int dimension;
+    private final int slotSize;
+    private final int bucketSize;
+    private final int bucketCount;
+    private final int bucketsPerSegment;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private volatile boolean closed = false;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder corrupted = new LongAdder();
+
+    /**
+     * @param path       缓存文件路径
+     * @param dimension  向量维度
+     * @param maxEntries 最多缓存的向量数量
+     * @param modelName  向量模型名称，与文件中记录的不一致时清空缓存
+     */
+    public MappedEmbeddingStore(Path path, int dimension, int maxEntries, String modelName) throws IOException {
+        this.path = path;
+        this.dimension = dimension;
+        this.slotSize = SLOT_META_SIZE + dimension * Float.BYTES;
+        this.bucketSize = slotSize * WAYS;
+        this.bucketCount = Math.max(1, (maxEntries + WAYS - 1) / WAYS);
+        this.bucketsPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / bucketSize);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long modelHash = modelHash(modelName);
+        if (!headerMatches(modelHash)) {
+            if (channel.size() > 0) {
+                log.info("向量缓存文件 {} 与当前配置不一致，重新创建", path);
+            }
+            channel.truncate(0);
+            writeHeader(modelHash);
+        }
+
+        int segmentCount = (bucketCount + bucketsPerSegment - 1) / bucketsPerSegment;
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int buckets = Math.min(bucketsPerSegment, bucketCount - i * bucketsPerSegment);
+            long position = HEADER_SIZE + (long) i * bucketsPerSegment * bucketSize;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) buckets * bucketSize);
+        }
+        log.info("向量缓存已加载: {}, 容量 {} 个向量, 维度 {}", path, (long) bucketCount * WAYS, dimension);
+    }
+
+    /**
+     * 查询向量，未命中返回 null
+     */
+    public float[] get(byte[] key) {
+        int bucket = bucketOf(key);
+        MappedByteBuffer segment = segments[bucket / bucketsPerSegment];
+        int bucketOffset = (bucket % bucketsPerSegment) * bucketSize;
+        synchronized (locks[bucket % LOCK_STRIPES]) {
+            if (closed) {
+                return null;
+            }
+            for (int way = 0; way < WAYS; way++) {
+                int offset = bucketOffset + way * slotSize;
+                if (segment.getLong(offset + KEY_SIZE) == 0 || !keyEquals(segment, offset, key)) {
+                    continue;
+                }
+                float[] vector = readVector(segment, offset);
+                if (vector == null) {
+                    corrupted.increment();
+                    segment.putLong(offset + KEY_SIZE, 0);
+                    break;
+                }
+                segment.putLong(offset + KEY_SIZE, System.currentTimeMillis());
+                hits.increment();
+                return vector;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入向量，维度不一致的向量不缓存
+     */
+    public void put(byte[] key, float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            return;
+        }
+        byte[] bytes = new byte[dimension * Float.BYTES];
+        ByteBuffer.wrap(bytes).asFloatBuffer().put(vector);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        int bucket = bucketOf(key);
+        MappedByteBuffer segment = segments[bucket / bucketsPerSegment];
+        int bucketOffset = (bucket % bucketsPerSegment) * bucketSize;
+        synchronized (locks[bucket % LOCK_STRIPES]) {
+            if (closed) {
+                return;
+            }
+            // 优先覆盖相同的键，其次空槽位，否则淘汰最久未访问的槽位
+            int target = -1;
+            long oldestStamp = Long.MAX_VALUE;
+            for (int way = 0; way < WAYS; way++) {
+                int offset = bucketOffset + way * slotSize;
+                long stamp = segment.getLong(offset + KEY_SIZE);
+                if (stamp != 0 && keyEquals(segment, offset, key)) {
+                    target = offset;
+                    oldestStamp = 0;
+                    break;
+                }
+                if (stamp < oldestStamp) {
+                    target = offset;
+                    oldestStamp = stamp;
+                }
+            }
+            if (oldestStamp > 0) {
+                evictions.increment();
+            }
+
+            segment.putLong(target + KEY_SIZE, 0);
+            segment.put(target + SLOT_META_SIZE, bytes);
+            segment.putInt(target + KEY_SIZE + 8, (int) crc.getValue());
+            segment.put(target, key);
+            segment.putLong(target + KEY_SIZE, System.currentTimeMillis());
+        }
+        writes.increment();
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("path", path.toString());
+        stats.put("capacity", (long) bucketCount * WAYS);
+        stats.put("dimension", dimension);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0
+                : Math.round(hitCount * 10000.0 / (hitCount + missCount)) / 100.0);
+        stats.put("writes", writes.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("corrupted", corrupted.sum());
+        return stats;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // 等待进行中的读写完成
+        for (Object lock : locks) {
+            synchronized (lock) {
+                // no-op
+            }
+        }
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        channel.close();
+        log.info("向量缓存已关闭: {}", getStats());
+    }
+
+    private int bucketOf(byte[] key) {
+        long hash = ByteBuffer.wrap(key, 0, Long.BYTES).getLong();
+        return (int) Math.floorMod(hash, (long) bucketCount);
+    }
+
+    private boolean keyEquals(MappedByteBuffer segment, int offset, byte[] key) {
+        for (int i = 0; i < KEY_SIZE; i += Long.BYTES) {
+            if (segment.getLong(offset + i) != ByteBuffer.wrap(key, i, Long.BYTES).getLong()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private float[] readVector(MappedByteBuffer segment, int offset) {
+        byte[] bytes = new byte[dimension * Float.BYTES];
+        segment.get(offset + SLOT_META_SIZE, bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != segment.getInt(offset + KEY_SIZE + 8)) {
+            return null;
+        }
+        float[] vector = new float[dimension];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private boolean headerMatches(long modelHash) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        return header.getInt() == MAGIC
+                && header.getInt() == VERSION
+                && header.getInt() == dimension
+                && header.getInt() == WAYS
+                && header.getInt() == bucketCount
+                && header.getLong() == modelHash;
+    }
+
+    private void writeHeader(long modelHash) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(WAYS).putInt(bucketCount).putLong(modelHash);
+        header.rewind();
+        channel.write(header, 0);
+    }
+
+    private static long modelHash(String modelName) {
+        byte[] bytes = String.valueOf(modelName).getBytes(StandardCharsets.UTF_8);
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,89 @@
+package ai.tx.knowledge.center.service.embedding;
+
+import ai.tx.knowledge.center.common.HashUtils;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 查询向量缓存
+ * 检索和问答时的查询向量保存在内存中，容量满时淘汰最久未使用的条目。
+ * 键为向量模型名称加标准化后查询文本的SHA-256，更换模型后旧条目不会再命中；值直接保存 float[]。
+ *
+ * @author tanxiong
+ */
+public class QueryEmbeddingCache {
+
+    private final String modelName;
+    private final int maxEntries;
+    private final Map<ByteBuffer, float[]> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong missNanos = new AtomicLong();
+
+    /**
+     * @param modelName  向量模型名称
+     * @param maxEntries 最多缓存的查询数
+     */
+    public QueryEmbeddingCache(String modelName, int maxEntries) {
+        this.modelName = modelName;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 读取查询向量，未命中时调用向量模型并缓存
+     *
+     * @param query    标准化后的查询
+     * @param embedder 实际的向量化
+     * @return 向量副本，调用方修改不影响缓存
+     */
+    public float[] get(String query, Function<String, float[]> embedder) {
+        ByteBuffer key = ByteBuffer.wrap(HashUtils.sha256(modelName + "\n" + query));
+        float[] vector;
+        synchronized (entries) {
+            vector = entries.get(key);
+        }
+        if (vector != null) {
+            hits.incrementAndGet();
+            return vector.clone();
+        }
+        misses.incrementAndGet();
+        long start = System.nanoTime();
+        vector = embedder.apply(query);
+        missNanos.addAndGet(System.nanoTime() - start);
+        synchronized (entries) {
+            entries.put(key, vector.clone());
+        }
+        return vector;
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", size);
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        stats.put("avgMissMillis", missCount == 0 ? 0 : missNanos.get() / missCount / 1_000_000.0);
+        return stats;
+    }
+}
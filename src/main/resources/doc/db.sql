@@ -1,14 +1,27 @@
 CREATE TABLE documents
 (
     id          VARCHAR(64) PRIMARY KEY COMMENT 'id,与Milvus关联的文档ID',
-    document_name  VARCHAR(64) COMMENT '文件名称',
+    document_name  VARCHAR(512) COMMENT '文件名称，压缩包中的文件为包内路径',
     category    VARCHAR(50) COMMENT '简单分类',
-    status      ENUM ('PROCESSING', 'COMPLETED', 'FAILED') DEFAULT 'PROCESSING',
+    status      ENUM ('PROCESSING', 'COMPLETED', 'FAILED', 'DELETING') DEFAULT 'PROCESSING',
+    version     INT NOT NULL DEFAULT 0 COMMENT '版本号，每次入库成功后加一',
+    fail_reason VARCHAR(500) COMMENT '处理失败原因',
     created_at  TIMESTAMP                                  DEFAULT CURRENT_TIMESTAMP,
     updated_at  TIMESTAMP                                  DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 ) ENGINE = InnoDB
   DEFAULT CHARSET = utf8mb4 COMMENT ='文档管理表';
 
+create index idx_documents_status
+    on documents (status);
+
+-- 已有数据库升级：
+-- ALTER TABLE documents ADD COLUMN version INT NOT NULL DEFAULT 0 COMMENT '版本号，每次入库成功后加一' AFTER status;
+-- UPDATE documents SET version = 1 WHERE status = 'COMPLETED';
+-- ALTER TABLE documents ADD COLUMN fail_reason VARCHAR(500) COMMENT '处理失败原因' AFTER version;
+-- ALTER TABLE documents MODIFY COLUMN document_name VARCHAR(512) COMMENT '文件名称，压缩包中的文件为包内路径';
+-- ALTER TABLE documents MODIFY COLUMN status ENUM ('PROCESSING', 'COMPLETED', 'FAILED', 'DELETING') DEFAULT 'PROCESSING';
+-- create index idx_documents_status on documents (status);
+
 -- 对话会话表
 CREATE TABLE conversations
 (
@@ -49,3 +62,65 @@ create index idx_created_at
 
 
 
+
+-- 文档片段台账表
+CREATE TABLE document_chunks
+(
+    id           VARCHAR(64) PRIMARY KEY COMMENT '向量库中的片段ID',
+    document_id  VARCHAR(64) NOT NULL COMMENT '文档ID',
+    content_hash VARCHAR(128) COMMENT '片段内容hash(用于重新上传时跳过未变化的片段)',
+    simhash      BIGINT COMMENT '片段内容SimHash指纹(用于同分类下近似重复片段的检测)',
+    duplicate_of VARCHAR(64) COMMENT '近似重复时链接的片段ID，此时片段不写入向量库',
+    created_at   TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='文档片段台账表';
+
+create index idx_document_chunks_document_id
+    on document_chunks (document_id);
+
+create index idx_document_chunks_duplicate_of
+    on document_chunks (duplicate_of);
+
+-- 已有数据库升级：
+-- ALTER TABLE document_chunks ADD COLUMN simhash BIGINT COMMENT '片段内容SimHash指纹(用于同分类下近似重复片段的检测)' AFTER content_hash;
+-- ALTER TABLE document_chunks ADD COLUMN duplicate_of VARCHAR(64) COMMENT '近似重复时链接的片段ID，此时片段不写入向量库' AFTER simhash;
+-- create index idx_document_chunks_duplicate_of on document_chunks (duplicate_of);
+
+-- 入库断点表
+CREATE TABLE ingest_checkpoints
+(
+    document_id     VARCHAR(64) PRIMARY KEY COMMENT '文档ID',
+    node            VARCHAR(128) NOT NULL COMMENT '执行入库的节点',
+    spool_path      VARCHAR(512) NOT NULL COMMENT '转存文件路径',
+    file_name       VARCHAR(512) NOT NULL COMMENT '原始文件名',
+    file_type       VARCHAR(32)  NOT NULL COMMENT '文件类型',
+    file_size       BIGINT       NOT NULL COMMENT '文件大小(字节)',
+    attempts        INT          NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    chunks_written  INT          NOT NULL DEFAULT 0 COMMENT '本次执行已连续写入的片段数',
+    batches_written INT          NOT NULL DEFAULT 0 COMMENT '本次执行已写入的批次数',
+    updated_at      TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='入库断点表';
+
+create index idx_ingest_checkpoints_node
+    on ingest_checkpoints (node);
+
+-- 目录同步清单表
+CREATE TABLE sync_files
+(
+    id            VARCHAR(64)   PRIMARY KEY COMMENT '文件路径的SHA-256',
+    path          VARCHAR(1024) NOT NULL COMMENT '文件绝对路径',
+    category      VARCHAR(50)   NOT NULL COMMENT '同步目录对应的分类',
+    document_id   VARCHAR(64)   NOT NULL COMMENT '文档ID',
+    file_size     BIGINT        NOT NULL COMMENT '文件大小(字节)',
+    last_modified BIGINT        NOT NULL COMMENT '文件修改时间(毫秒)',
+    content_hash  VARCHAR(64)   NOT NULL COMMENT '文件内容SHA-256',
+    synced_at     TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '最近一次提交入库的时间'
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='目录同步清单表';
+
+create index idx_sync_files_path
+    on sync_files (path(255));
+
+create index idx_sync_files_document_id
+    on sync_files (document_id);
@@ -0,0 +1,226 @@
+package ai.tx.knowledge.center.service.chunking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 分块规划回归测试
+ * chunking/boundaries.txt 记录了原 KnowledgeFileService.createSmartChunks 在 chunking/corpus 语料上输出的chunk边界，
+ * 规划器的输出必须与之完全一致；原实现保留在测试中，另在随机文本上逐一比对。
+ *
+ * <p>性能测试默认不执行，通过 -Dbenchmark=true 运行
+ *
+ * @author tanxiong
+ */
+class ChunkPlannerTest {
+
+    private static final String[] MODES = {
+            SentenceSegmenter.MODE_STRICT, SentenceSegmenter.MODE_RELAXED, SentenceSegmenter.MODE_BREAK_ITERATOR
+    };
+
+    @Test
+    void corpusBoundariesArePinned() throws IOException {
+        int checked = 0;
+        for (String line : resource("chunking/boundaries.txt").split("\n")) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            String text = TextNormalizer.normalize(resource("chunking/corpus/" + fields[0]));
+            int[] sizes = parseSizes(fields[2]);
+            String actual = format(plan(text, fields[1], sizes));
+            assertEquals(fields[3], actual, () -> fields[0] + " " + fields[1] + " " + fields[2]);
+            checked++;
+        }
+        assertFalse(checked == 0, "boundaries.txt 中没有用例");
+    }
+
+    @Test
+    void matchesLegacyPlannerOnRandomText() {
+        Random random = new Random(20240605L);
+        for (int round = 0; round < 3_000; round++) {
+            String text = TextNormalizer.normalize(randomText(random, 200 + random.nextInt(6_000)));
+            int max = 20 + random.nextInt(400);
+            int target = 1 + random.nextInt(max);
+            int min = random.nextInt(target + 1);
+            int overlap = random.nextInt(max);
+            int[] sizes = {target, max, min, overlap};
+            for (String mode : MODES) {
+                SentenceBuffer sentences = segment(text, mode);
+                String expected = format(legacyPlan(sentences, text, sizes));
+                String actual = format(plan(text, mode, sizes));
+                int currentRound = round;
+                assertEquals(expected, actual, () -> "round " + currentRound + " " + mode + " " + format(sizes));
+            }
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() {
+        ChunkPlanner planner = new ChunkPlanner(800, 1200, 200, 600);
+        for (int count : new int[]{25_000, 100_000, 400_000}) {
+            // 大量3字符的短句，重叠回退会反复经过同一批句子
+            StringBuilder text = new StringBuilder(count * 4);
+            SentenceBuffer sentences = new SentenceBuffer(count);
+            for (int i = 0; i < count; i++) {
+                sentences.add(text.length(), text.length() + 3);
+                text.append("ab. ");
+            }
+            long best = Long.MAX_VALUE;
+            int chunks = 0;
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                chunks = planner.plan(sentences, text, (s, e) -> { });
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%d sentences, %d chunks: %.2f ms%n", count, chunks, best / 1e6);
+        }
+    }
+
+    /**
+     * 原 KnowledgeFileService.createSmartChunks 的实现
+     */
+    static List<int[]> legacyPlan(SentenceBuffer sentences, String text, int[] sizes) {
+        int targetChunkSize = sizes[0];
+        int maxChunkSize = sizes[1];
+        int minChunkSize = sizes[2];
+        int overlapSize = sizes[3];
+        List<int[]> chunks = new ArrayList<>();
+        if (sentences.isEmpty()) return chunks;
+
+        int currentIndex = 0;
+        while (currentIndex < sentences.size()) {
+            int chunkStart = sentences.start(currentIndex);
+            int chunkEnd = chunkStart;
+            int sentenceCount = 0;
+
+            for (int i = currentIndex; i < sentences.size(); i++) {
+                int candidateEnd = sentences.end(i);
+                int candidateSize = candidateEnd - chunkStart;
+                if (candidateSize > maxChunkSize) {
+                    if (sentenceCount == 0) {
+                        chunkEnd = Math.min(chunkStart + maxChunkSize, text.length());
+                        break;
+                    } else {
+                        break;
+                    }
+                }
+                chunkEnd = candidateEnd;
+                sentenceCount++;
+                if (candidateSize >= targetChunkSize) {
+                    break;
+                }
+            }
+
+            if (chunkEnd - chunkStart < minChunkSize && currentIndex + sentenceCount < sentences.size()) {
+                for (int i = currentIndex + sentenceCount; i < sentences.size(); i++) {
+                    int candidateEnd = sentences.end(i);
+                    if (candidateEnd - chunkStart <= maxChunkSize) {
+                        chunkEnd = candidateEnd;
+                        sentenceCount++;
+                        if (chunkEnd - chunkStart >= minChunkSize) break;
+                    } else {
+                        break;
+                    }
+                }
+            }
+
+            chunks.add(new int[]{chunkStart, chunkEnd});
+
+            int nextStart = Math.max(chunkEnd - overlapSize, chunkStart + 1);
+            currentIndex = legacyFindNextSentenceIndex(sentences, nextStart, currentIndex + 1);
+
+            if (currentIndex <= 0) {
+                currentIndex = Math.max(currentIndex + sentenceCount, currentIndex + 1);
+            }
+        }
+        return chunks;
+    }
+
+    private static int legacyFindNextSentenceIndex(SentenceBuffer sentences, int targetOffset, int minIndex) {
+        for (int i = minIndex; i < sentences.size(); i++) {
+            if (sentences.start(i) >= targetOffset) {
+                return i;
+            }
+        }
+        return sentences.size();
+    }
+
+    /**
+     * 与 KnowledgeFileService.splitIntoSentences 一致：没有句子边界时整段作为一个句子
+     */
+    static SentenceBuffer segment(String text, String mode) {
+        SentenceBuffer sentences = SentenceSegmenter.segment(text, mode);
+        if (sentences.isEmpty() && !text.trim().isEmpty()) {
+            sentences.add(0, text.length());
+        }
+        return sentences;
+    }
+
+    private static List<int[]> plan(String text, String mode, int[] sizes) {
+        List<int[]> chunks = new ArrayList<>();
+        new ChunkPlanner(sizes[0], sizes[1], sizes[2], sizes[3])
+                .plan(segment(text, mode), text, (start, end) -> chunks.add(new int[]{start, end}));
+        return chunks;
+    }
+
+    static String format(List<int[]> chunks) {
+        StringJoiner joiner = new StringJoiner(" ");
+        chunks.forEach(chunk -> joiner.add(chunk[0] + "-" + chunk[1]));
+        return joiner.toString();
+    }
+
+    private static String format(int[] sizes) {
+        return sizes[0] + "/" + sizes[1] + "/" + sizes[2] + "/" + sizes[3];
+    }
+
+    static int[] parseSizes(String value) {
+        String[] parts = value.split("/");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i]);
+        }
+        return sizes;
+    }
+
+    static String resource(String name) throws IOException {
+        try (InputStream input = ChunkPlannerTest.class.getClassLoader().getResourceAsStream(name)) {
+            assertNotNull(input, name);
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 中英文句子、缩写、省略号、超长无标点片段和各类空白混合的随机文本
+     */
+    private static String randomText(Random random, int length) {
+        String[] pieces = {
+                "The policy applies. ", "Dr. Smith approved it. ", "e.g. the form", "Really?! ", "Wait... ",
+                "员工应当提交申请。", "请于月底前完成！", "是否需要审批？", "……", "；", "\n", "\n\n\n", "\t", "  ",
+                "word ", "数据", "v3.1 ", "(see 4.2) ", "\"quoted.\" ", "x"
+        };
+        StringBuilder text = new StringBuilder(length + 32);
+        while (text.length() < length) {
+            if (random.nextInt(40) == 0) {
+                // 超过最大长度的无标点长句，触发强制切分
+                text.append("long".repeat(50 + random.nextInt(200))).append(' ');
+            } else {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package ai.tx.knowledge.center.service.chunking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 文本标准化与原正则实现的等价性测试
+ * 原实现（四次 replaceAll 再 trim）保留在测试中作为对照，单次扫描的结果必须逐字符一致。
+ *
+ * <p>性能对比默认不执行，通过 -Dbenchmark=true 运行
+ *
+ * @author tanxiong
+ */
+class TextNormalizerTest {
+
+    /**
+     * 随机输入使用的字符：各类空白、换行、控制字符与普通中英文字符混合
+     */
+    private static final char[] ALPHABET = {
+            '\r', '\n', '\t', '\u000B', '\f', ' ', '　', ' ', ' ', ' ',
+            '\u0000', '\u0001', '\u001F', '\u0085', ' ', '​',
+            'a', 'b', 'Z', '0', '.', '!', '?', '。', '！', '？', '中', '文', '，', '#'
+    };
+
+    /**
+     * 原 KnowledgeFileService.normalizeText 的实现
+     */
+    private static String regexNormalize(String text) {
+        if (text == null) return "";
+        String normalized = text.replaceAll("\\r\\n?", "\n");
+        normalized = normalized.replaceAll("[\\t\\u000B\\f\\u00A0]+", " ");
+        normalized = normalized.replaceAll(" +", " ");
+        normalized = normalized.replaceAll("\n{3,}", "\n\n");
+        return normalized.trim();
+    }
+
+    @Test
+    void matchesRegexOnEdgeCases() {
+        String[] cases = {
+                null, "", " ", "\r", "\r\n", "\n\r", "\r\r\n\n", "\u0000", " \u0001 ",
+                "a", " a ", "\ta\t", "a\r\nb", "a\rb", "a\n\n\n\nb", "a \n \n \n b", "a\t  \fb",
+                "a  \r\n  \r\n  \r\n  b", "　a　", "a\u0085b", "\n\n\na", "a\n\n\n",
+                "第一句。  第二句！\r\n\r\n\r\n第三句？", "x\u000B\u000By", "  \u001F\u001F  z"
+        };
+        for (String text : cases) {
+            assertEquals(regexNormalize(text), TextNormalizer.normalize(text), () -> "input: " + escape(text));
+        }
+    }
+
+    @Test
+    void matchesRegexOnRandomInput() {
+        Random random = new Random(20240601L);
+        for (int round = 0; round < 300_000; round++) {
+            String text = randomText(random, random.nextInt(64));
+            assertEquals(regexNormalize(text), TextNormalizer.normalize(text), () -> "input: " + escape(text));
+        }
+    }
+
+    @Test
+    void incrementalMatchesBatch() {
+        Random random = new Random(7L);
+        for (int round = 0; round < 20_000; round++) {
+            String text = randomText(random, random.nextInt(256));
+            StringBuilder out = new StringBuilder();
+            TextNormalizer normalizer = new TextNormalizer(out::append);
+            for (int i = 0; i < text.length(); i++) {
+                normalizer.append(text.charAt(i));
+            }
+            normalizer.finish();
+            assertEquals(TextNormalizer.normalize(text), out.toString(), () -> "input: " + escape(text));
+            assertEquals(text.trim().isEmpty(), normalizer.isRawBlank(), () -> "input: " + escape(text));
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() {
+        String english = corpus(new Random(1L), "The employee handbook describes leave policy, travel expense approval and data access rules. ");
+        String chinese = corpus(new Random(2L), "员工手册说明了请假制度、差旅费用审批流程以及数据访问权限的管理规定。");
+        for (String[] entry : new String[][]{{"english", english}, {"chinese", chinese}}) {
+            String text = entry[1];
+            assertEquals(regexNormalize(text), TextNormalizer.normalize(text));
+            long regex = Long.MAX_VALUE;
+            long scanner = Long.MAX_VALUE;
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                regexNormalize(text);
+                regex = Math.min(regex, System.nanoTime() - start);
+                start = System.nanoTime();
+                TextNormalizer.normalize(text);
+                scanner = Math.min(scanner, System.nanoTime() - start);
+            }
+            System.out.printf("%s %d chars: regex %.1f ms, scanner %.1f ms%n",
+                    entry[0], text.length(), regex / 1e6, scanner / 1e6);
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 约 8M 字符的语料，句子之间随机插入 CRLF、连续空行、制表符和不间断空格
+     */
+    private static String corpus(Random random, String sentence) {
+        String[] separators = {" ", "  ", "\r\n", "\n\n\n\n", "\t", "  ", " \r\n \r\n"};
+        StringBuilder text = new StringBuilder(8_200_000);
+        while (text.length() < 8_000_000) {
+            text.append(sentence).append(separators[random.nextInt(separators.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String escape(String text) {
+        if (text == null) return "null";
+        StringBuilder out = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            out.append(c >= ' ' && c < 0x7F ? String.valueOf(c) : String.format("\\u%04X", (int) c));
+        }
+        return out.toString();
+    }
+}